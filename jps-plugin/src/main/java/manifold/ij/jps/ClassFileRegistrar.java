@@ -0,0 +1,156 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.jps;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.jetbrains.jps.incremental.CompileContext;
+import org.jetbrains.jps.incremental.messages.ProgressMessage;
+
+/**
+ * Registers the .class files manifold generates with the JPS output consumers of their source files, see
+ * {@link IjChangedResourceFiles#getTypesToFile()}.
+ * <p/>
+ * Output directories are listed once per package instead of checking each class file for existence, and the class
+ * files of separate output consumers are registered in parallel.
+ */
+class ClassFileRegistrar
+{
+  interface Output<C>
+  {
+    /**
+     * Class files are registered in parallel per consumer
+     */
+    C getConsumer();
+
+    File getOutputDir();
+
+    void registerOutputFile( File classFile, File sourceFile ) throws IOException;
+  }
+
+  /**
+   * @param outputForFile Provides the output of a source file, null if the file is not part of the build
+   * @return The consumers having registered class files
+   */
+  static <C> Set<C> registerClasses( CompileContext context, String builderName, Map<File, Set<String>> typesToFile,
+                                     Function<File, ? extends Output<C>> outputForFile )
+  {
+    long start = System.nanoTime();
+
+    Map<C, List<Pending<C>>> pendingByConsumer = new LinkedHashMap<>();
+    for( Map.Entry<File, Set<String>> entry : typesToFile.entrySet() )
+    {
+      File sourceFile = entry.getKey();
+      Output<C> output = outputForFile.apply( sourceFile );
+      if( output == null || output.getOutputDir() == null )
+      {
+        continue;
+      }
+      List<Pending<C>> pending = pendingByConsumer.computeIfAbsent( output.getConsumer(), k -> new ArrayList<>() );
+      for( String fqn : entry.getValue() )
+      {
+        pending.add( new Pending<>( output, sourceFile, fqn ) );
+      }
+    }
+
+    Set<C> registered = ConcurrentHashMap.newKeySet();
+    AtomicInteger count = new AtomicInteger();
+    pendingByConsumer.entrySet().parallelStream().forEach( entry -> {
+      Map<File, Set<String>> classFilesByDir = new HashMap<>();
+      for( Pending<C> pending : entry.getValue() )
+      {
+        String rootRelativeClassFile = pending._fqn.replace( '.', File.separatorChar ) + ".class";
+        File classFile = new File( pending._output.getOutputDir(), rootRelativeClassFile );
+        Set<String> classFiles = classFilesByDir.computeIfAbsent( classFile.getParentFile(), ClassFileRegistrar::listClassFiles );
+        if( classFiles.contains( classFile.getName() ) )
+        {
+          try
+          {
+            pending._output.registerOutputFile( classFile, pending._sourceFile );
+          }
+          catch( IOException e )
+          {
+            throw new RuntimeException( e );
+          }
+          registered.add( entry.getKey() );
+          count.incrementAndGet();
+        }
+      }
+    } );
+
+    if( count.get() > 0 )
+    {
+      context.processMessage( new ProgressMessage( builderName + ": registered " + count.get() + " class files in " +
+        TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) + "ms" ) );
+    }
+    return registered;
+  }
+
+  private static Set<String> listClassFiles( File dir )
+  {
+    if( dir == null || !dir.isDirectory() )
+    {
+      return Collections.emptySet();
+    }
+
+    Set<String> names = new HashSet<>();
+    try( DirectoryStream<Path> stream = Files.newDirectoryStream( dir.toPath(), "*.class" ) )
+    {
+      for( Path path : stream )
+      {
+        names.add( path.getFileName().toString() );
+      }
+    }
+    catch( IOException e )
+    {
+      return Collections.emptySet();
+    }
+    return names;
+  }
+
+  private static class Pending<C>
+  {
+    private final Output<C> _output;
+    private final File _sourceFile;
+    private final String _fqn;
+
+    private Pending( Output<C> output, File sourceFile, String fqn )
+    {
+      _output = output;
+      _sourceFile = sourceFile;
+      _fqn = fqn;
+    }
+  }
+}
@@ -22,7 +22,10 @@ package manifold.ij.jps;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import manifold.api.type.IIncrementalCompileDriver;
 import org.jetbrains.jps.builders.java.JavaBuilderUtil;
 import org.jetbrains.jps.incremental.CompileContext;
@@ -32,11 +35,36 @@ public class IjResourceIncrementalCompileDriver implements IIncrementalCompileDr
   /** _Manifold_Temp_Main_.java file name -> compile driver */
   static ThreadLocal<Map<String, IjResourceIncrementalCompileDriver>> INSTANCES = new ThreadLocal<>();
 
-  public static IjResourceIncrementalCompileDriver getInstance( int identityHash )
+  /** _Manifold_Temp_Main_.java file name -> driver id, kept for the life of the build process */
+  private static final Map<String, Integer> ID_BY_STUB = new HashMap<>();
+  private static final Set<Integer> IDS = new HashSet<>();
+
+  /**
+   * The driver id of a {@code _temp_} main class. The id is unique among all the stubs, it starts from the hash of the
+   * stub's path and stays the same for the stub from build to build, so the stub's content does too.
+   */
+  static synchronized int idFor( File tempMainClass )
+  {
+    String path = tempMainClass.getAbsolutePath();
+    Integer id = ID_BY_STUB.get( path );
+    if( id == null )
+    {
+      id = path.hashCode();
+      while( id == 0 || IDS.contains( id ) )
+      {
+        id++;
+      }
+      IDS.add( id );
+      ID_BY_STUB.put( path, id );
+    }
+    return id;
+  }
+
+  public static IjResourceIncrementalCompileDriver getInstance( int id )
   {
     for( IjResourceIncrementalCompileDriver driver: INSTANCES.get().values() )
     {
-      if( System.identityHashCode( driver ) == identityHash )
+      if( driver._id == id )
       {
         return driver;
       }
@@ -45,17 +73,34 @@ public class IjResourceIncrementalCompileDriver implements IIncrementalCompileDr
   }
 
   private final CompileContext _context;
+  private final int _id;
   private Collection<File> _files;
 
   /**
    * @param context Context of build, null if rebuild
    */
   public IjResourceIncrementalCompileDriver( CompileContext context )
+  {
+    this( context, 0 );
+  }
+
+  /**
+   * @param context Context of build, null if rebuild
+   * @param id Identifies the driver in the {@code driverInstance} of the {@code _temp_} main class, see
+   *           {@link #getInstance(int)}. If zero, the driver's identity hash is used.
+   */
+  public IjResourceIncrementalCompileDriver( CompileContext context, int id )
   {
     _context = context;
+    _id = id == 0 ? System.identityHashCode( this ) : id;
     _files = new ArrayList<>();
   }
 
+  public int getId()
+  {
+    return _id;
+  }
+
   public boolean isIncremental()
   {
     return _context != null && JavaBuilderUtil.isCompileJavaIncrementally( _context );
@@ -21,13 +21,10 @@ package manifold.ij.jps;
 
 import com.intellij.openapi.util.io.FileUtil;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -50,10 +47,6 @@ import org.jetbrains.jps.incremental.resources.ResourcesBuilder;
 import org.jetbrains.jps.model.JpsTypedElement;
 import org.jetbrains.jps.model.java.JavaResourceRootType;
 import org.jetbrains.jps.model.java.JavaSourceRootType;
-import org.jetbrains.jps.model.library.JpsLibrary;
-import org.jetbrains.jps.model.library.JpsOrderRootType;
-import org.jetbrains.jps.model.module.JpsModule;
-import org.jetbrains.jps.model.module.JpsModuleDependency;
 import org.jetbrains.jps.model.module.JpsModuleSourceRoot;
 
 /**
@@ -87,7 +80,7 @@ public class ManChangedResourcesBuilder extends ResourcesBuilder implements Buil
       deleteTempMainSourceClasses( context );
     }
 
-    registerClasses();
+    registerClasses( context );
 
     IjResourceIncrementalCompileDriver.INSTANCES.set( null );
 
@@ -131,6 +124,7 @@ public class ManChangedResourcesBuilder extends ResourcesBuilder implements Buil
 
     addOutputConsumer( (BuildOutputConsumerImpl)outputConsumer, targetOutputDir );
 
+    boolean manifoldModule = ManifoldModules.hasManifoldDependency( context, target.getModule() );
     try
     {
       List<File> changedFiles = new ArrayList<>();
@@ -148,7 +142,7 @@ public class ManChangedResourcesBuilder extends ResourcesBuilder implements Buil
           return true;
         }
 
-        if( incremental )
+        if( manifoldModule )
         {
           // Incremental compilation -- add the resource file for Manifold to compile, otherwise
           // if it is not referenced by a Java file included in the build, it will not be be recompiled.
@@ -174,6 +168,9 @@ public class ManChangedResourcesBuilder extends ResourcesBuilder implements Buil
       // delete the .class files on subsequent incremental build to enable recompilation of the fragments.
       //
 
+      // Every dirty resource goes to Manifold, even if only its timestamp changed, since JPS deletes the .class files
+      // mapped to it. A target having no dirty resources makes no '_temp_' main class, a target having dirty resources
+      // makes one, in a source root of its own kind (production or test), so only its own javac round runs.
       if( incremental && !changedFiles.isEmpty() )
       {
         List<File> tempMainClasses = makeTempMainClasses( context, target );
@@ -206,7 +203,7 @@ public class ManChangedResourcesBuilder extends ResourcesBuilder implements Buil
     _outputDirToOc.put( outputDir.getAbsolutePath(), outputConsumer );
   }
 
-  static class Data
+  static class Data implements ClassFileRegistrar.Output<BuildOutputConsumerImpl>
   {
     BuildOutputConsumerImpl _oc;
     ResourcesTarget _target;
@@ -216,47 +213,33 @@ public class ManChangedResourcesBuilder extends ResourcesBuilder implements Buil
       _oc = oc;
       _target = target;
     }
-  }
 
-  private void registerClasses()
-  {
-    Set<BuildOutputConsumerImpl> ocs = new LinkedHashSet<>();
-    Map<File, Set<String>> typesToFile = IjChangedResourceFiles.getTypesToFile();
-    for( Map.Entry<File, Set<String>> entry : typesToFile.entrySet() )
+    @Override
+    public BuildOutputConsumerImpl getConsumer()
     {
-      Set<String> types = entry.getValue();
-      for( String fqn : types )
-      {
-        try
-        {
-          File resourceFile = entry.getKey();
-          Data data = _fileToData.get( resourceFile );
-          if( data != null )
-          {
-            File classFile = findClassFile( fqn, data._target.getOutputDir() );
-            if( classFile != null )
-            {
-              data._oc.registerOutputFile( classFile, Collections.singleton( resourceFile.getPath() ) );
-              ocs.add( data._oc );
-            }
-          }
-        }
-        catch( IOException e )
-        {
-          throw new RuntimeException( e );
-        }
-      }
+      return _oc;
     }
 
-    // Send FileGeneratedEvent for the changed class files (for hot swap debugging)
-    ocs.forEach( oc -> oc.fireFileGeneratedEvent() );
+    @Override
+    public File getOutputDir()
+    {
+      return _target.getOutputDir();
+    }
+
+    @Override
+    public void registerOutputFile( File classFile, File sourceFile ) throws IOException
+    {
+      _oc.registerOutputFile( classFile, Collections.singleton( sourceFile.getPath() ) );
+    }
   }
 
-  private File findClassFile( String fqn, File outputPath )
+  private void registerClasses( CompileContext context )
   {
-    String rootRelativeClassFile = fqn.replace( '.', File.separatorChar ) + ".class";
-    File classFile = new File( outputPath, rootRelativeClassFile );
-    return classFile.isFile() ? classFile : null;
+    Set<BuildOutputConsumerImpl> ocs = ClassFileRegistrar.registerClasses(
+      context, getPresentableName(), IjChangedResourceFiles.getTypesToFile(), _fileToData::get );
+
+    // Send FileGeneratedEvent for the changed class files (for hot swap debugging)
+    ocs.forEach( oc -> oc.fireFileGeneratedEvent() );
   }
 
   private List<File> makeTempMainClasses( CompileContext context, ResourcesTarget target )
@@ -270,8 +253,19 @@ public class ManChangedResourcesBuilder extends ResourcesBuilder implements Buil
     {
       if( !(jpsSourceRoot instanceof JpsTypedElement) ||
           !(((JpsTypedElement)jpsSourceRoot).getType() instanceof JavaSourceRootType) ||
-          !hasManifoldDependency( target.getModule() ) )
+          !ManifoldModules.hasManifoldDependency( context, target.getModule() ) )
+      {
+        continue;
+      }
+
+      // number the stubs over all the module's java source roots so production and test stubs keep distinct names
+      index++;
+
+      if( !tempMainClasses.isEmpty() ||
+          ((JavaSourceRootType)((JpsTypedElement)jpsSourceRoot).getType()).isForTests() != target.isTests() )
       {
+        // one stub per target is enough to drive manifold, and a stub in a source root of the other kind (production
+        // vs. test) would cause a javac round for a target having no changed resources
         continue;
       }
 
@@ -291,22 +285,17 @@ public class ManChangedResourcesBuilder extends ResourcesBuilder implements Buil
       sourceRoot.mkdir();
       sourceRoot.deleteOnExit(); // in case the compiler exits abnormally
 
-      index++;
       File tempMainClass = new File( sourceRoot, manifold_temp_main_ + index + ".java" );
-      if( tempMainClass.isFile() )
-      {
-        // already there
-        continue;
-      }
+      Map<String, IjResourceIncrementalCompileDriver> drivers = getDrivers();
 
       tempMainClass.deleteOnExit(); // in case the compiler exits abnormally
       try
       {
-        IjResourceIncrementalCompileDriver driver = new IjResourceIncrementalCompileDriver( context );
-        //noinspection ResultOfMethodCallIgnored
-        tempMainClass.createNewFile();
-        FileWriter writer = new FileWriter( tempMainClass );
-        writer.write(
+        // the driver id is unique and stable, so the stub's content is the same from build to build and a stub left
+        // behind by an abnormally terminated build is reused as is
+        IjResourceIncrementalCompileDriver driver =
+          new IjResourceIncrementalCompileDriver( context, IjResourceIncrementalCompileDriver.idFor( tempMainClass ) );
+        String content =
           "//!! Temporary generated file to facilitate incremental compilation of Manifold resources\n" +
           "package _temp_;\n" +
           "\n" +
@@ -314,16 +303,16 @@ public class ManChangedResourcesBuilder extends ResourcesBuilder implements Buil
           "\n" +
           addResourceRoots( resourceRoots ) +
           "@IncrementalCompile( driverClass = \"manifold.ij.jps.IjResourceIncrementalCompileDriver\",\n" +
-          "                     driverInstance = " + System.identityHashCode( driver ) + " )\n" +
+          "                     driverInstance = " + driver.getId() + " )\n" +
           "public class " + manifold_temp_main_ + index + "\n" +
           "{\n" +
-          "}\n"
-        );
-        writer.flush();
-        writer.close();
+          "}\n";
+        if( !tempMainClass.isFile() || !content.equals( FileUtil.loadFile( tempMainClass ) ) )
+        {
+          FileUtil.writeToFile( tempMainClass, content );
+        }
         FSOperations.markDirty( context, CompilationRound.CURRENT, tempMainClass );
 
-        Map<String, IjResourceIncrementalCompileDriver> drivers = getDrivers();
         drivers.put( tempMainClass.getAbsolutePath(), driver );
 
         tempMainClasses.add( tempMainClass );
@@ -336,45 +325,6 @@ public class ManChangedResourcesBuilder extends ResourcesBuilder implements Buil
     return tempMainClasses;
   }
 
-  private boolean hasManifoldDependency( JpsModule module )
-  {
-    return _hasManifoldDependency( module, new HashSet<>() );
-  }
-  private boolean _hasManifoldDependency( JpsModule module, Set<JpsModule> visited )
-  {
-    if( visited.contains( module ) )
-    {
-      return false;
-    }
-    visited.add( module );
-
-    if( module.getDependenciesList().getDependencies().stream()
-        .anyMatch( e -> // must be at least manifold.jar, not utilities etc.
-          e.toString().contains( "manifold-" ) &&
-          !e.toString().contains( "manifold-util" ) &&
-          !e.toString().contains( "manifold-bootstrap" ) ) )
-    {
-      return true;
-    }
-
-    List<JpsLibrary> libraries = module.getLibraryCollection().getLibraries();
-    for( JpsLibrary lib: libraries )
-    {
-      if( lib.getRoots( JpsOrderRootType.COMPILED ).stream()
-          .anyMatch( e -> // must be at least manifold.jar, not utilities etc.
-            e.getUrl().contains( "manifold-" ) &&
-            !e.getUrl().contains( "manifold-util" ) &&
-            !e.getUrl().contains( "manifold-bootstrap" ) ) )
-      {
-        return true;
-      }
-    }
-
-    return module.getDependenciesList().getDependencies().stream()
-           .anyMatch( dep -> dep instanceof JpsModuleDependency &&
-                             _hasManifoldDependency( ((JpsModuleDependency)dep).getModule(), visited ) );
-  }
-
   @NotNull
   private Map<String, IjResourceIncrementalCompileDriver> getDrivers()
   {
@@ -26,7 +26,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jps.ModuleChunk;
@@ -124,10 +123,10 @@ public class ManFileFragmentBuilder extends ModuleLevelBuilder
 
   public void buildFinished( CompileContext context )
   {
-    registerClasses();
+    registerClasses( context );
   }
 
-  static class Data
+  static class Data implements ClassFileRegistrar.Output<OutputConsumer>
   {
     OutputConsumer _oc;
     ModuleBuildTarget _target;
@@ -137,45 +136,33 @@ public class ManFileFragmentBuilder extends ModuleLevelBuilder
       _oc = oc;
       _target = target;
     }
-  }
 
-  private void registerClasses()
-  {
-    Map<File, Set<String>> typesToFile = IjChangedResourceFiles.getTypesToFile();
-    for( Map.Entry<File, Set<String>> entry: typesToFile.entrySet() )
+    @Override
+    public OutputConsumer getConsumer()
     {
-      Set<String> types = entry.getValue();
-      for( String fqn: types )
-      {
-        try
-        {
-          File sourceFile = entry.getKey();
-          Data data = _fileToData.get( sourceFile );
-          if( data != null )
-          {
-            File classFile = findClassFile( fqn, data._target.getOutputDir() );
-            if( classFile != null )
-            {
-              data._oc.registerOutputFile( data._target, classFile, Collections.singleton( sourceFile.getPath() ) );
-            }
-          }
-        }
-        catch( IOException e )
-        {
-          throw new RuntimeException( e );
-        }
-      }
+      return _oc;
     }
 
-//## todo: is this necessary (for file fragments?)
-//    // Send FileGeneratedEvent for the changed class files (for hot swap debugging)
-//    ocs.forEach( oc -> ReflectUtil.method( oc, "fireFileGeneratedEvent" ) );
+    @Override
+    public File getOutputDir()
+    {
+      return _target.getOutputDir();
+    }
+
+    @Override
+    public void registerOutputFile( File classFile, File sourceFile ) throws IOException
+    {
+      _oc.registerOutputFile( _target, classFile, Collections.singleton( sourceFile.getPath() ) );
+    }
   }
 
-  private File findClassFile( String fqn, File outputPath )
+  private void registerClasses( CompileContext context )
   {
-    String rootRelativeClassFile = fqn.replace( '.', File.separatorChar ) + ".class";
-    File classFile = new File( outputPath, rootRelativeClassFile );
-    return classFile.isFile() ? classFile : null;
+    ClassFileRegistrar.registerClasses(
+      context, getPresentableName(), IjChangedResourceFiles.getTypesToFile(), _fileToData::get );
+
+//## todo: is this necessary (for file fragments?)
+//    // Send FileGeneratedEvent for the changed class files (for hot swap debugging)
+//    ocs.forEach( oc -> ReflectUtil.method( oc, "fireFileGeneratedEvent" ) );
   }
 }
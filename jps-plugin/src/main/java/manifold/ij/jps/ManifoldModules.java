@@ -0,0 +1,133 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.jps;
+
+import com.intellij.openapi.util.Key;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.jetbrains.jps.incremental.CompileContext;
+import org.jetbrains.jps.model.library.JpsLibrary;
+import org.jetbrains.jps.model.library.JpsOrderRootType;
+import org.jetbrains.jps.model.module.JpsDependencyElement;
+import org.jetbrains.jps.model.module.JpsModule;
+import org.jetbrains.jps.model.module.JpsModuleDependency;
+
+/**
+ * The modules of a build having a manifold dependency, directly or through their module dependencies. Computed once
+ * per build in a single pass over the module graph and shared by the manifold builders.
+ */
+class ManifoldModules
+{
+  private static final Key<ManifoldModules> KEY = Key.create( "manifold.jps.modules" );
+
+  private final Set<JpsModule> _modules;
+
+  static boolean hasManifoldDependency( CompileContext context, JpsModule module )
+  {
+    ManifoldModules modules = context.getUserData( KEY );
+    if( modules == null )
+    {
+      synchronized( ManifoldModules.class )
+      {
+        modules = context.getUserData( KEY );
+        if( modules == null )
+        {
+          modules = new ManifoldModules( context.getProjectDescriptor().getProject().getModules() );
+          context.putUserData( KEY, modules );
+        }
+      }
+    }
+    return modules._modules.contains( module );
+  }
+
+  private ManifoldModules( List<JpsModule> allModules )
+  {
+    Set<JpsModule> modules = new HashSet<>();
+    Map<JpsModule, List<JpsModule>> dependents = new HashMap<>();
+    Deque<JpsModule> queue = new ArrayDeque<>();
+    for( JpsModule module : allModules )
+    {
+      for( JpsDependencyElement dep : module.getDependenciesList().getDependencies() )
+      {
+        if( dep instanceof JpsModuleDependency )
+        {
+          JpsModule depModule = ((JpsModuleDependency)dep).getModule();
+          if( depModule != null )
+          {
+            dependents.computeIfAbsent( depModule, k -> new ArrayList<>() ).add( module );
+          }
+        }
+      }
+
+      if( hasDirectManifoldDependency( module ) && modules.add( module ) )
+      {
+        queue.add( module );
+      }
+    }
+
+    // a module depending on a manifold module has a manifold dependency
+    while( !queue.isEmpty() )
+    {
+      for( JpsModule dependent : dependents.getOrDefault( queue.poll(), Collections.emptyList() ) )
+      {
+        if( modules.add( dependent ) )
+        {
+          queue.add( dependent );
+        }
+      }
+    }
+    _modules = modules;
+  }
+
+  private static boolean hasDirectManifoldDependency( JpsModule module )
+  {
+    if( module.getDependenciesList().getDependencies().stream()
+        .anyMatch( e -> isManifoldJar( e.toString() ) ) )
+    {
+      return true;
+    }
+
+    List<JpsLibrary> libraries = module.getLibraryCollection().getLibraries();
+    for( JpsLibrary lib: libraries )
+    {
+      if( lib.getRoots( JpsOrderRootType.COMPILED ).stream()
+          .anyMatch( e -> isManifoldJar( e.getUrl() ) ) )
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isManifoldJar( String name )
+  {
+    // must be at least manifold.jar, not utilities etc.
+    return name.contains( "manifold-" ) &&
+           !name.contains( "manifold-util" ) &&
+           !name.contains( "manifold-bootstrap" );
+  }
+}
@@ -38,6 +38,9 @@ import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import manifold.api.fs.IDirectory;
@@ -63,12 +66,17 @@ import org.jetbrains.jps.model.java.compiler.JpsJavaCompilerOptions;
  */
 public class ManModule extends SimpleModule
 {
+  /** Bounds the FQN index, IJ resolves plenty of names that are not manifold types */
+  private static final int MAX_INDEXED_FQNS = 100_000;
+
   private final ManProject _manProject;
   private final Module _ijModule;
   private final List<Dependency> _dependencies;
   private final List<IDirectory> _excludedDirs;
   private URLClassLoader _typeManifoldClassLoader;
   private final LocklessLazyVar<List<ManModule>> _modulesDependingOnMe;
+  private final LocklessLazyVar<ManModule[]> _visibleModules;
+  private final LocklessLazyVar<GlobalSearchScope> _moduleWithDependenciesScope;
   private final LocklessLazyVar<Boolean> _isExtEnabled;
   private final LocklessLazyVar<Boolean> _isStringsEnabled;
   private final LocklessLazyVar<Boolean> _isExceptionsEnabled;
@@ -77,6 +85,9 @@ public class ManModule extends SimpleModule
   private final LocklessLazyVar<Boolean> _isParamsEnabled;
   private final LocklessLazyVar<Boolean> _isDelegationEnabled;
   private final LocklessLazyVar<Boolean> _isTuplesEnabled;
+  private final ConcurrentSkipListMap<String, Set<ITypeManifold>> _typeManifoldsByFqn;
+  private final AtomicInteger _indexedFqnCount;
+  private final AtomicLong _typeManifoldIndexStamp;
 
   ManModule( ManProject manProject, Module ijModule, List<IDirectory> classpath, List<IDirectory> sourcePath, List<IDirectory> outputPath, List<IDirectory> excludedDirs )
   {
@@ -91,6 +102,12 @@ public class ManModule extends SimpleModule
         ModuleUtilCore.collectModulesDependsOn( getIjModule(), result );
         return result.stream().map( ManProject::getModule ).collect( Collectors.toList() );
       } );
+    _visibleModules = LocklessLazyVar.make( () -> {
+      LinkedHashSet<ManModule> result = new LinkedHashSet<>();
+      collectVisibleModules( this, result );
+      return result.toArray( new ManModule[0] );
+    } );
+    _moduleWithDependenciesScope = LocklessLazyVar.make( () -> GlobalSearchScope.moduleWithDependenciesScope( _ijModule ) );
     _isExtEnabled = LocklessLazyVar.make( () -> hasJar( "manifold-ext-rt" ) || hasJar( "manifold-all" ) );
     _isStringsEnabled = LocklessLazyVar.make( () -> hasJar( "manifold-strings" ) || hasJar( "manifold-all" ) );
     _isExceptionsEnabled = LocklessLazyVar.make( () -> hasJar( "manifold-exceptions" ) || hasJar( "manifold-all" ) );
@@ -99,6 +116,9 @@ public class ManModule extends SimpleModule
     _isParamsEnabled = LocklessLazyVar.make( () -> hasJar( "manifold-params" ) || hasJar( "manifold-all" ) );
     _isDelegationEnabled = LocklessLazyVar.make( () -> hasJar( "manifold-parts" ) || hasJar( "manifold-all" ) );
     _isTuplesEnabled = LocklessLazyVar.make( () -> hasJar( "manifold-tuple" ) || hasJar( "manifold-all" ) );
+    _typeManifoldsByFqn = new ConcurrentSkipListMap<>();
+    _indexedFqnCount = new AtomicInteger();
+    _typeManifoldIndexStamp = new AtomicLong();
   }
 
   private boolean hasJar( String jarName )
@@ -164,6 +184,50 @@ public class ManModule extends SimpleModule
     return _ijModule.getProject();
   }
 
+  /**
+   * This module followed by the modules whose types it can see: its direct dependencies and, transitively, their
+   * exported dependencies, in depth-first order. Computed once, modules are rebuilt when roots change.
+   */
+  public ManModule[] getVisibleModules()
+  {
+    return _visibleModules.get();
+  }
+
+  /**
+   * @return True if this module or a module whose types it can see has type manifolds
+   */
+  public boolean hasVisibleTypeManifolds()
+  {
+    for( ManModule module: getVisibleModules() )
+    {
+      if( !module.getTypeManifolds().isEmpty() )
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void collectVisibleModules( ManModule root, LinkedHashSet<ManModule> result )
+  {
+    if( !result.add( this ) )
+    {
+      return;
+    }
+    for( Dependency d: getDependencies() )
+    {
+      if( this == root || d.isExported() )
+      {
+        ((ManModule)d.getModule()).collectVisibleModules( root, result );
+      }
+    }
+  }
+
+  public GlobalSearchScope getModuleWithDependenciesScope()
+  {
+    return _moduleWithDependenciesScope.get();
+  }
+
   @Override
   public IFileSystem getFileSystem()
   {
@@ -177,7 +241,7 @@ public class ManModule extends SimpleModule
 
   public final Set<ITypeManifold> super_findTypeManifoldsFor( String fqn, Predicate<ITypeManifold> predicate )
   {
-    return super.findTypeManifoldsFor( fqn, predicate );
+    return filter( findLocalTypeManifoldsFor( fqn ), predicate );
   }
 
   //## hack: exclude the Gosu type manifold to prevent interference with Studio's Gosu support, and also because Gosu
@@ -205,7 +269,14 @@ public class ManModule extends SimpleModule
   @Override
   public final Set<ITypeManifold> findTypeManifoldsFor( String fqn, Predicate<ITypeManifold> predicate )
   {
-    return findTypeManifoldsFor( fqn, predicate, this, new HashSet<>() );
+    Set<ITypeManifold> sps = filter( findLocalTypeManifoldsFor( fqn ), predicate );
+    if( !sps.isEmpty() || getDependencies().isEmpty() )
+    {
+      return sps;
+    }
+    HashSet<ManModule> visited = new HashSet<>();
+    visited.add( this );
+    return findTypeManifoldsInDependencies( fqn, predicate, this, visited );
   }
   private Set<ITypeManifold> findTypeManifoldsFor( String fqn, Predicate<ITypeManifold> predicate, ManModule root, HashSet<ManModule> visited )
   {
@@ -216,12 +287,16 @@ public class ManModule extends SimpleModule
     }
     visited.add( this );
 
-    Set<ITypeManifold> sps = super.findTypeManifoldsFor( fqn, predicate );
+    Set<ITypeManifold> sps = filter( findLocalTypeManifoldsFor( fqn ), predicate );
     if( !sps.isEmpty() )
     {
       return sps;
     }
-    sps = new HashSet<>();
+    return findTypeManifoldsInDependencies( fqn, predicate, root, visited );
+  }
+  private Set<ITypeManifold> findTypeManifoldsInDependencies( String fqn, Predicate<ITypeManifold> predicate, ManModule root, HashSet<ManModule> visited )
+  {
+    Set<ITypeManifold> sps = new HashSet<>();
     for( Dependency d: getDependencies() )
     {
       if( this == root || d.isExported() )
@@ -232,6 +307,89 @@ public class ManModule extends SimpleModule
     return sps;
   }
 
+  /**
+   * The type manifolds in this module, excluding dependencies, that handle {@code fqn}. Results, including empty ones,
+   * are indexed by FQN until invalidated by a refresh, see {@link #invalidateTypeManifoldIndex(String[])}.
+   */
+  private Set<ITypeManifold> findLocalTypeManifoldsFor( String fqn )
+  {
+    Set<ITypeManifold> tms = _typeManifoldsByFqn.get( fqn );
+    if( tms != null )
+    {
+      return tms;
+    }
+
+    long stamp = _typeManifoldIndexStamp.get();
+    Set<ITypeManifold> found = super.findTypeManifoldsFor( fqn, tm -> true );
+    tms = found.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet( found );
+    if( stamp == _typeManifoldIndexStamp.get() )
+    {
+      // only index the result if no refresh happened while computing it
+      if( _indexedFqnCount.get() >= MAX_INDEXED_FQNS )
+      {
+        clearTypeManifoldIndex();
+      }
+      if( _typeManifoldsByFqn.putIfAbsent( fqn, tms ) == null )
+      {
+        _indexedFqnCount.incrementAndGet();
+      }
+    }
+    return tms;
+  }
+
+  private static Set<ITypeManifold> filter( Set<ITypeManifold> tms, Predicate<ITypeManifold> predicate )
+  {
+    if( tms.isEmpty() || predicate == null )
+    {
+      return tms.isEmpty() ? Collections.emptySet() : new HashSet<>( tms );
+    }
+    Set<ITypeManifold> result = Collections.emptySet();
+    for( ITypeManifold tm: tms )
+    {
+      if( predicate.test( tm ) )
+      {
+        if( result.isEmpty() )
+        {
+          result = new HashSet<>( 2 );
+        }
+        result.add( tm );
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Remove {@code fqns} and the names nested in them from this module's FQN index. Called when a refresh request
+   * affects this module.
+   */
+  public void invalidateTypeManifoldIndex( String[] fqns )
+  {
+    _typeManifoldIndexStamp.incrementAndGet();
+    for( String fqn: fqns )
+    {
+      if( _typeManifoldsByFqn.remove( fqn ) != null )
+      {
+        _indexedFqnCount.decrementAndGet();
+      }
+      // '/' follows '.', the submap covers all names nested in fqn
+      Map<String, Set<ITypeManifold>> nested = _typeManifoldsByFqn.subMap( fqn + '.', fqn + '/' );
+      for( String key: nested.keySet() )
+      {
+        if( _typeManifoldsByFqn.remove( key ) != null )
+        {
+          _indexedFqnCount.decrementAndGet();
+        }
+      }
+    }
+  }
+
+  public void clearTypeManifoldIndex()
+  {
+    _typeManifoldIndexStamp.incrementAndGet();
+    _typeManifoldsByFqn.clear();
+    _indexedFqnCount.set( 0 );
+  }
+
   /**
    * Search for the type manifolds that use {@code file} as the basis for type[s].  Note searching for type manifolds
    * for a file amounts to first finding the module that contains {@code file} and the transitive set of modules that
@@ -249,8 +407,19 @@ public class ManModule extends SimpleModule
                                                                       Predicate<ITypeManifold> include,
                                                                       Predicate<ITypeManifold> terminate)
   {
-    Set<ITypeManifold> result = Collections.emptySet();
     Module moduleForFile = ModuleUtilCore.findModuleForFile( ((IjFile)file.getPhysicalFile()).getVirtualFile(), project );
+    return findTypeManifoldsForFile( project, file, moduleForFile, include, terminate );
+  }
+
+  /**
+   * Same as {@link #findTypeManifoldsForFile(Project, IFile, Predicate, Predicate)}, but for callers that already know
+   * the module containing {@code file}, e.g., when refreshing many files from the same directory.
+   */
+  public static @NotNull Set<ITypeManifold> findTypeManifoldsForFile( Project project, IFile file, Module moduleForFile,
+                                                                      Predicate<ITypeManifold> include,
+                                                                      Predicate<ITypeManifold> terminate)
+  {
+    Set<ITypeManifold> result = Collections.emptySet();
     Collection<ManModule> modules;
     if( moduleForFile == null )
     {
@@ -28,92 +28,138 @@ import com.intellij.openapi.editor.event.DocumentEvent;
 import com.intellij.openapi.editor.event.DocumentListener;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.TextRange;
-import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
 import com.intellij.testFramework.LightVirtualFile;
 import com.intellij.util.Alarm;
 import com.intellij.util.FileContentUtilCore;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import org.jetbrains.annotations.NotNull;
-import org.jspecify.annotations.NonNull;
 
 /**
  * For Preprocessor.
  * <p/>
  * Listens for changes to Java source files where a {@code #define} or {@code #undef} is involved and reparses the
  * file so the preprocessor can take into account the changes.
+ * <p/>
+ * The whole file is reparsed, there is no range-scoped mode. Since the lexer evaluates every {@code #if} statement
+ * against the file's definitions, reparsing only the affected statements would have to go through the document commit,
+ * which only follows text changes. Instead, the reparse is skipped unless an {@code #if} condition references a symbol
+ * involved in the change, or the symbols can't be determined, e.g., while a directive is half typed.
  */
 public class ManPreprocessorDocumentListener implements DocumentListener
 {
   private final Project _project;
   private final Alarm _alarm;
-  private boolean _reparse;
+  // document changes and alarm requests are on the EDT
+  private final Map<Document, PendingReparse> _pending;
+  private PendingReparse _before;
 
   public ManPreprocessorDocumentListener( Project project )
   {
     _project = project;
     _alarm = new Alarm( Alarm.ThreadToUse.SWING_THREAD, project );
+    _pending = new HashMap<>();
   }
 
   @Override
   public void beforeDocumentChange( @NotNull DocumentEvent event )
   {
-    if( shouldReparse( event ) )
-    {
-      _reparse = true;
-    }
+    // the old text is only available before the change
+    _before = shouldReparse( event, event.getOffset(), event.getOffset() + event.getOldLength() );
   }
 
   @Override
   public void documentChanged( @NotNull DocumentEvent event )
   {
-    if( _reparse || shouldReparse( event ) )
+    PendingReparse after = shouldReparse( event, event.getOffset(), event.getOffset() + event.getNewLength() );
+    PendingReparse before = _before;
+    _before = null;
+    if( before != null || after != null )
     {
-      reparse( event );
+      PendingReparse pending = _pending.computeIfAbsent( event.getDocument(), doc -> new PendingReparse() );
+      pending.add( before );
+      pending.add( after );
+      reparse();
     }
-    _reparse = false;
   }
 
-  private void reparse( @NonNull DocumentEvent event )
+  private void reparse()
   {
     _alarm.cancelAllRequests();
     _alarm.addRequest( () -> {
       // Avoid interfering with active completion
       if( LookupManager.getInstance( _project ).getActiveLookup() != null )
       {
-        reparse( event );
+        reparse();
         return;
       }
 
-      PsiDocumentManager.getInstance( _project ).commitDocument( event.getDocument() );
-      ApplicationManager.getApplication().runReadAction( () -> {
-        VirtualFile vfile = FileDocumentManager.getInstance().getFile( event.getDocument() );
-        FileContentUtilCore.reparseFiles( vfile );
-      } );
+      Map<Document, PendingReparse> pending = new HashMap<>( _pending );
+      _pending.clear();
+      pending.forEach( this::reparse );
     }, 150 );
   }
 
-  private boolean shouldReparse( DocumentEvent event )
+  private void reparse( Document document, PendingReparse pending )
   {
     if( _project.isDisposed() )
     {
-      return false;
+      return;
+    }
+
+    PsiDocumentManager.getInstance( _project ).commitDocument( document );
+    VirtualFile vfile = FileDocumentManager.getInstance().getFile( document );
+    if( vfile == null || !vfile.isValid() )
+    {
+      return;
+    }
+
+    if( !pending._fullReparse && !hasConditionalsReferencing( document, pending._symbols ) )
+    {
+      // no conditions depend on the changed definitions
+      return;
+    }
+
+    ApplicationManager.getApplication().runReadAction( () -> FileContentUtilCore.reparseFiles( vfile ) );
+  }
+
+  /**
+   * @return True if the document has an {@code #if} statement whose conditions reference any of {@code symbols}
+   */
+  private boolean hasConditionalsReferencing( Document document, Set<String> symbols )
+  {
+    return !PreprocessorDirectiveScanner.findConditionalsReferencing(
+      document.getImmutableCharSequence(), symbols ).isEmpty();
+  }
+
+  /**
+   * @return The symbols involved if the lines spanning {@code start}-{@code end} have a {@code #define} or
+   * {@code #undef} directive, otherwise null
+   */
+  private PendingReparse shouldReparse( DocumentEvent event, int start, int end )
+  {
+    if( _project.isDisposed() )
+    {
+      return null;
     }
 
     Document doc = event.getDocument();
     if( getLanguage( doc ) != JavaLanguage.INSTANCE )
     {
-      return false;
+      return null;
     }
 
     if( FileDocumentManager.getInstance().getFile( doc ) instanceof LightVirtualFile )
     {
-      return false;
+      return null;
     }
 
-    return definitionChanged( event );
+    return definitionChanged( doc, start, end );
   }
 
   private Language getLanguage( Document document )
@@ -136,17 +182,41 @@ public class ManPreprocessorDocumentListener implements DocumentListener
     return psiFile.getLanguage();
   }
 
-  private boolean definitionChanged( @NotNull DocumentEvent event )
+  /**
+   * Multi-line changes and pastes are covered by examining all the lines spanned by the change
+   */
+  private PendingReparse definitionChanged( Document doc, int start, int end )
   {
-    // todo: handle multiline changes, also check event.getFragement() for '#define' etc.
+    int textLength = doc.getTextLength();
+    start = Math.min( start, textLength );
+    end = Math.min( end, textLength );
+    int lineStart = doc.getLineStartOffset( doc.getLineNumber( start ) );
+    int lineEnd = doc.getLineEndOffset( doc.getLineNumber( end ) );
+    CharSequence lines = doc.getImmutableCharSequence().subSequence( lineStart, lineEnd );
+    if( !PreprocessorDirectiveScanner.hasDefinitionDirective( lines ) )
+    {
+      return null;
+    }
 
-    int offset = event.getOffset();
-    Document doc = event.getDocument();
-    int line = doc.getLineNumber( offset );
-    int lineStart = doc.getLineStartOffset( line );
-    int lineEnd = doc.getLineEndOffset( line );
-    String lineText = doc.getText( new TextRange( lineStart, lineEnd ) );
-    return StringUtil.contains( lineText, "#define" ) ||
-           StringUtil.contains( lineText, "#undef" );
+    PendingReparse reparse = new PendingReparse();
+    reparse._symbols.addAll( PreprocessorDirectiveScanner.findDefinedSymbols( lines ) );
+    // a directive without a symbol is incomplete or was removed in part, can't tell what it affected
+    reparse._fullReparse = reparse._symbols.isEmpty();
+    return reparse;
+  }
+
+  private static class PendingReparse
+  {
+    private final Set<String> _symbols = new HashSet<>();
+    private boolean _fullReparse;
+
+    private void add( PendingReparse reparse )
+    {
+      if( reparse != null )
+      {
+        _symbols.addAll( reparse._symbols );
+        _fullReparse |= reparse._fullReparse;
+      }
+    }
   }
 }
@@ -49,6 +49,7 @@ import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.psi.impl.PsiDocumentTransactionListener;
+import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.testFramework.LightVirtualFile;
 import com.intellij.util.PlatformUtils;
 import com.intellij.util.messages.MessageBusConnection;
@@ -102,6 +103,8 @@ public class ManProject
   private FileModificationManager _fileModificationManager;
   private ManifoldPsiClassCache _psiClassCache;
   private LocklessLazyVar<Set<ManModule>> _rootModules;
+  private Map<GlobalSearchScope, List<ManModule>> _modulesByScope;
+  private Map<GlobalSearchScope, Boolean> _typeManifoldsInScope;
   private boolean _hasNamedModule;
 
   @SuppressWarnings("unused")
@@ -355,6 +358,8 @@ public class ManProject
     _modules = LockingLazyVar.make( () -> ApplicationManager.getApplication().<Map<Module, ManModule>>runReadAction(
       () -> SlowOperationsUtil.allowSlowOperation( "manifold.generic", this::defineModules ) ) );
     _rootModules = assignRootModuleLazy();
+    _modulesByScope = new ConcurrentWeakHashMap<>();
+    _typeManifoldsInScope = new ConcurrentWeakHashMap<>();
     ManLibraryChecker.instance().warnIfManifoldJarsAreOld( getNativeProject() );
   }
 
@@ -434,6 +439,7 @@ public class ManProject
     {
       // Force symbol providers to reload in order to handle a build variant change
       ServiceDefinitions.REGISTERED_SYMBOL_PROVIDERS.clear();
+      ManDefinitionsCache.invalidate();
 
       // retokenize open files in case the build variant changed
       ReparseUtil.instance().reparseRecentJavaFiles( getNativeProject() );
@@ -758,6 +764,29 @@ public class ManProject
     return _rootModules.get();
   }
 
+  /**
+   * The modules whose content is in {@code scope}, or an empty list if none of them and none of the modules whose types
+   * they can see have type manifolds. Results are cached per scope until the project is reset, which happens when roots
+   * change. Note modules without type manifolds are included otherwise, their dependencies may have some.
+   */
+  public List<ManModule> getModulesInScope( GlobalSearchScope scope )
+  {
+    Map<GlobalSearchScope, List<ManModule>> modulesByScope = _modulesByScope;
+    Map<GlobalSearchScope, Boolean> typeManifoldsInScope = _typeManifoldsInScope;
+    List<ManModule> modules = modulesByScope.get( scope );
+    Boolean hasTypeManifolds = typeManifoldsInScope.get( scope );
+    if( modules == null || hasTypeManifolds == null )
+    {
+      modules = getModules().values().stream()
+        .filter( module -> scope.isSearchInModuleContent( module.getIjModule() ) )
+        .collect( Collectors.toUnmodifiableList() );
+      hasTypeManifolds = modules.stream().anyMatch( ManModule::hasVisibleTypeManifolds );
+      modulesByScope.put( scope, modules );
+      typeManifoldsInScope.put( scope, hasTypeManifolds );
+    }
+    return hasTypeManifolds ? modules : Collections.emptyList();
+  }
+
   private Map<Module, ManModule> defineModules()
   {
     ModuleManager moduleManager = ModuleManager.getInstance( _ijProject );
@@ -27,6 +27,7 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
 import kotlin.Unit;
 import kotlin.coroutines.Continuation;
+import manifold.ij.extensions.ManTypeWarmUp;
 import manifold.ij.extensions.ManifoldPsiClassAnnotator;
 import manifold.ij.template.ManTemplateBraceMatcher;
 import manifold.ij.template.ManTemplateLanguage;
@@ -44,6 +45,8 @@ public class ManStartupActivity implements com.intellij.openapi.startup.ProjectA
     initForAllProjects();
 
     ApplicationManager.getApplication().runReadAction( () -> ManProject.manProjectFrom( project ).projectOpened() );
+
+    ManTypeWarmUp.startIfEnabled( project );
     return null;
   }
 
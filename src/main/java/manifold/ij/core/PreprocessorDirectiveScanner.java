@@ -0,0 +1,204 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.core;
+
+import com.intellij.openapi.util.TextRange;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * For Preprocessor.
+ * <p/>
+ * A line-based scan of preprocessor directives. This is not a parser, it is only precise enough to find the symbols a
+ * change defines or undefines, the symbols {@code #if} conditions reference, and the {@code #if} statements whose
+ * conditions reference given symbols.
+ */
+public class PreprocessorDirectiveScanner
+{
+  private static final Pattern DEFINITION = Pattern.compile( "#(?:define|undef)\\s+([A-Za-z_$][\\w$]*)" );
+  private static final Pattern IDENTIFIER = Pattern.compile( "[A-Za-z_$][\\w$]*" );
+
+  /**
+   * @return The symbols defined or undefined by {@code #define} and {@code #undef} directives in {@code text}
+   */
+  public static Set<String> findDefinedSymbols( CharSequence text )
+  {
+    Set<String> symbols = new LinkedHashSet<>();
+    Matcher matcher = DEFINITION.matcher( text );
+    while( matcher.find() )
+    {
+      symbols.add( matcher.group( 1 ) );
+    }
+    return symbols;
+  }
+
+  /**
+   * @return True if {@code text} has a {@code #define} or {@code #undef} directive, complete or not
+   */
+  public static boolean hasDefinitionDirective( CharSequence text )
+  {
+    String str = text.toString();
+    return str.contains( "#define" ) || str.contains( "#undef" );
+  }
+
+  /**
+   * @return The symbols referenced in the conditions of {@code #if} and {@code #elif} directives in {@code text}
+   */
+  public static Set<String> findReferencedSymbols( CharSequence text )
+  {
+    Set<String> symbols = new LinkedHashSet<>();
+    forEachLine( text, (start, end) -> {
+      String condition = getCondition( text, start, end );
+      if( condition != null )
+      {
+        Matcher matcher = IDENTIFIER.matcher( condition );
+        while( matcher.find() )
+        {
+          symbols.add( matcher.group() );
+        }
+      }
+    } );
+    return symbols;
+  }
+
+  /**
+   * Finds the top-level {@code #if} statements having an {@code #if} or {@code #elif} condition, possibly nested,
+   * that references any of {@code symbols}, i.e., the statements whose active branches may change with the symbols.
+   *
+   * @return The ranges of the statements, from the start of the {@code #if} line to the end of its {@code #endif}
+   * line, or to the end of the text if the {@code #endif} is missing
+   */
+  public static List<TextRange> findConditionalsReferencing( CharSequence text, Set<String> symbols )
+  {
+    List<TextRange> ranges = new ArrayList<>();
+    int[] depth = {0};
+    int[] stmtStart = {-1};
+    boolean[] referencing = {false};
+    forEachLine( text, (start, end) -> {
+      int directive = skipWhitespace( text, start, end );
+      if( startsWithDirective( text, directive, end, "#if" ) )
+      {
+        if( depth[0]++ == 0 )
+        {
+          stmtStart[0] = start;
+          referencing[0] = false;
+        }
+        referencing[0] |= references( getCondition( text, start, end ), symbols );
+      }
+      else if( depth[0] > 0 && startsWithDirective( text, directive, end, "#elif" ) )
+      {
+        referencing[0] |= references( getCondition( text, start, end ), symbols );
+      }
+      else if( depth[0] > 0 && startsWithDirective( text, directive, end, "#endif" ) )
+      {
+        if( --depth[0] == 0 && referencing[0] )
+        {
+          ranges.add( new TextRange( stmtStart[0], end ) );
+        }
+      }
+    } );
+    if( depth[0] > 0 && referencing[0] )
+    {
+      ranges.add( new TextRange( stmtStart[0], text.length() ) );
+    }
+    return ranges;
+  }
+
+  private static boolean references( String condition, Set<String> symbols )
+  {
+    if( condition == null )
+    {
+      return false;
+    }
+    Matcher matcher = IDENTIFIER.matcher( condition );
+    while( matcher.find() )
+    {
+      if( symbols.contains( matcher.group() ) )
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return The condition text of an {@code #if} or {@code #elif} directive line, otherwise null
+   */
+  private static String getCondition( CharSequence text, int start, int end )
+  {
+    int directive = skipWhitespace( text, start, end );
+    String name = startsWithDirective( text, directive, end, "#if" ) ? "#if"
+      : startsWithDirective( text, directive, end, "#elif" ) ? "#elif"
+      : null;
+    return name == null ? null : text.subSequence( directive + name.length(), end ).toString();
+  }
+
+  private static boolean startsWithDirective( CharSequence text, int offset, int end, String directive )
+  {
+    int directiveEnd = offset + directive.length();
+    if( directiveEnd > end )
+    {
+      return false;
+    }
+    for( int i = 0; i < directive.length(); i++ )
+    {
+      if( text.charAt( offset + i ) != directive.charAt( i ) )
+      {
+        return false;
+      }
+    }
+    return directiveEnd == end || !Character.isJavaIdentifierPart( text.charAt( directiveEnd ) );
+  }
+
+  private static int skipWhitespace( CharSequence text, int offset, int end )
+  {
+    while( offset < end && (text.charAt( offset ) == ' ' || text.charAt( offset ) == '\t') )
+    {
+      offset++;
+    }
+    return offset;
+  }
+
+  private static void forEachLine( CharSequence text, LineConsumer consumer )
+  {
+    int start = 0;
+    int length = text.length();
+    while( start < length )
+    {
+      int end = start;
+      while( end < length && text.charAt( end ) != '\n' )
+      {
+        end++;
+      }
+      consumer.accept( start, end );
+      start = end + 1;
+    }
+  }
+
+  private interface LineConsumer
+  {
+    void accept( int start, int end );
+  }
+}
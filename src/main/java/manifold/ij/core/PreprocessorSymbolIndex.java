@@ -0,0 +1,131 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.core;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.impl.cache.CacheManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.GlobalSearchScopesCore;
+import com.intellij.psi.search.UsageSearchContext;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import manifold.util.concurrent.ConcurrentHashSet;
+import manifold.util.concurrent.ConcurrentWeakHashMap;
+
+/**
+ * For Preprocessor.
+ * <p/>
+ * Maps preprocessor symbols to the files having {@code #if} or {@code #elif} conditions that reference them, so that a
+ * change to a symbol's definition, e.g., in build.properties, reparses exactly the files depending on it.
+ * <p/>
+ * The lexer records references as it tokenizes {@code #if} statements. Since files lexed in a previous session are not
+ * recorded, lookups also consult IntelliJ's word index when it is available.
+ */
+public class PreprocessorSymbolIndex
+{
+  private static final Map<Project, PreprocessorSymbolIndex> INDEXES = new ConcurrentWeakHashMap<>();
+
+  private final Map<String, Set<VirtualFile>> _filesBySymbol;
+
+  public static PreprocessorSymbolIndex instance( Project project )
+  {
+    return INDEXES.computeIfAbsent( project, key -> new PreprocessorSymbolIndex() );
+  }
+
+  private PreprocessorSymbolIndex()
+  {
+    _filesBySymbol = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Record that {@code file} has conditions referencing {@code symbols}
+   */
+  public void addReferences( VirtualFile file, Set<String> symbols )
+  {
+    for( String symbol : symbols )
+    {
+      _filesBySymbol.computeIfAbsent( symbol, key -> new ConcurrentHashSet<>() ).add( file );
+    }
+  }
+
+  /**
+   * Call from a read action.
+   *
+   * @param dir If non-null, only files in this directory or its subdirectories are considered
+   * @return The files having conditions that reference any of {@code symbols}
+   */
+  public Set<VirtualFile> findDependentFiles( Project project, Set<String> symbols, VirtualFile dir )
+  {
+    if( symbols.isEmpty() )
+    {
+      return Collections.emptySet();
+    }
+
+    Set<VirtualFile> result = new LinkedHashSet<>();
+    for( String symbol : symbols )
+    {
+      Set<VirtualFile> files = _filesBySymbol.get( symbol );
+      if( files != null )
+      {
+        files.removeIf( file -> !file.isValid() );
+        for( VirtualFile file : files )
+        {
+          if( dir == null || VfsUtilCore.isAncestor( dir, file, false ) )
+          {
+            result.add( file );
+          }
+        }
+      }
+    }
+
+    if( !DumbService.isDumb( project ) )
+    {
+      GlobalSearchScope scope = dir == null
+        ? GlobalSearchScope.projectScope( project )
+        : GlobalSearchScopesCore.directoryScope( project, dir, true );
+      for( String symbol : symbols )
+      {
+        CacheManager.getInstance( project ).processFilesWithWord( psiFile -> {
+          ProgressManager.checkCanceled();
+          VirtualFile file = psiFile.getVirtualFile();
+          if( file != null && !result.contains( file ) &&
+            "java".equalsIgnoreCase( file.getExtension() ) &&
+            !PreprocessorDirectiveScanner.findConditionalsReferencing(
+              psiFile.getViewProvider().getContents(), Collections.singleton( symbol ) ).isEmpty() )
+          {
+            result.add( file );
+            addReferences( file, Collections.singleton( symbol ) );
+          }
+          return true;
+        }, symbol, UsageSearchContext.ANY, scope, true );
+      }
+    }
+    return result;
+  }
+}
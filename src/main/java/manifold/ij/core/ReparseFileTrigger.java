@@ -19,20 +19,36 @@
 
 package manifold.ij.core;
 
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.fileEditor.FileDocumentManagerListener;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
 import com.intellij.testFramework.LightVirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
 import manifold.ij.util.ReparseUtil;
+import manifold.util.concurrent.ConcurrentWeakHashMap;
 import manifold.preprocessor.definitions.Definitions;
 import org.jetbrains.annotations.NotNull;
 
 /**
- * For preprocessor and dbconfig.  When a build.properties or *.dbconfig file is saved, open Java files reparse.
+ * For preprocessor and dbconfig.  When a *.dbconfig file is saved, open Java files reparse. When a build.properties file
+ * is saved, the Java files having {@code #if} conditions that reference the changed symbols reparse, see
+ * {@link PreprocessorSymbolIndex}.
  *
  * todo: make the conditions for reparsing, currently dbconfig and build.properties, pluggable.
  * todo: even better: if manifold IModel had concept of model dependencies, we could determine exactly the set of files
@@ -41,40 +57,126 @@ import org.jetbrains.annotations.NotNull;
  */
 class ReparseFileTrigger implements FileDocumentManagerListener
 {
+  private static final Logger LOG = Logger.getInstance( ReparseFileTrigger.class );
+
   private final Project _ijProject;
+  // the properties last seen per build.properties file, changes are diffed against them whether saved or reloaded
+  private final Map<VirtualFile, Map<String, String>> _lastProperties;
 
   ReparseFileTrigger( Project ijProject )
   {
     _ijProject = ijProject;
+    _lastProperties = new ConcurrentWeakHashMap<>();
   }
 
   @Override
   public void beforeDocumentSaving( @NotNull Document document )
   {
-    maybeReparseOpenJavaFiles( document );
+    // the file still has the old content, so the symbols that changed can be determined
+    maybeReparseJavaFiles( document, true );
   }
 
   @Override
   public void fileContentReloaded( @NotNull VirtualFile file, @NotNull Document document )
   {
-    maybeReparseOpenJavaFiles( document );
+    maybeReparseJavaFiles( document, false );
   }
 
   @Override
   public void fileContentLoaded( @NotNull VirtualFile file, @NotNull Document document )
   {
-    maybeReparseOpenJavaFiles( document );
+    maybeReparseJavaFiles( document, false );
   }
 
-  private void maybeReparseOpenJavaFiles( @NotNull Document document )
+  private void maybeReparseJavaFiles( @NotNull Document document, boolean saving )
   {
-    if( shouldReparse( document ) )
+    Trigger trigger = getTrigger( document );
+    if( trigger == Trigger.DbConfig )
     {
       ReparseUtil.instance().reparseRecentJavaFiles( _ijProject );
     }
+    else if( trigger == Trigger.BuildProperties )
+    {
+      reparseDependentJavaFiles( document, saving );
+    }
+  }
+
+  private void reparseDependentJavaFiles( Document document, boolean saving )
+  {
+    VirtualFile vfile = FileDocumentManager.getInstance().getFile( document );
+    if( vfile == null )
+    {
+      return;
+    }
+
+    Map<String, String> newProperties = loadProperties( document.getImmutableCharSequence() );
+    Map<String, String> oldProperties = _lastProperties.put( vfile, newProperties );
+    if( oldProperties == null )
+    {
+      if( !saving )
+      {
+        // first time the document is loaded, the Java files were lexed with these same properties
+        return;
+      }
+      // the file still has the old content
+      oldProperties = loadProperties( vfile );
+    }
+    Set<String> changedSymbols = new HashSet<>();
+    newProperties.forEach( (key, value) -> {
+      if( !value.equals( oldProperties.get( key ) ) )
+      {
+        changedSymbols.add( key );
+      }
+    } );
+    oldProperties.keySet().stream()
+      .filter( key -> !newProperties.containsKey( key ) )
+      .forEach( changedSymbols::add );
+    if( changedSymbols.isEmpty() )
+    {
+      return;
+    }
+
+    // build.properties applies to files in its directory and below
+    VirtualFile dir = vfile.getParent();
+    ReadAction.nonBlocking( () -> PreprocessorSymbolIndex.instance( _ijProject )
+        .findDependentFiles( _ijProject, changedSymbols, dir ) )
+      .expireWith( _ijProject )
+      .coalesceBy( this, vfile )
+      .finishOnUiThread( ModalityState.nonModal(),
+        files -> ReparseUtil.instance().reparseFiles( _ijProject, files ) )
+      .submit( AppExecutorUtil.getAppExecutorService() );
+  }
+
+  private Map<String, String> loadProperties( VirtualFile vfile )
+  {
+    try
+    {
+      return loadProperties( VfsUtilCore.loadText( vfile ) );
+    }
+    catch( IOException e )
+    {
+      LOG.warn( e );
+      return Collections.emptyMap();
+    }
   }
 
-  private boolean shouldReparse( Document document )
+  private Map<String, String> loadProperties( CharSequence text )
+  {
+    Properties properties = new Properties();
+    try
+    {
+      properties.load( new StringReader( text.toString() ) );
+    }
+    catch( IOException | IllegalArgumentException ignore )
+    {
+      // malformed unicode escapes etc., use what loaded
+    }
+    Map<String, String> map = new HashMap<>();
+    properties.stringPropertyNames().forEach( name -> map.put( name, properties.getProperty( name ) ) );
+    return map;
+  }
+
+  private Trigger getTrigger( Document document )
   {
     VirtualFile vfile = FileDocumentManager.getInstance().getFile( document );
     if( vfile == null || vfile instanceof LightVirtualFile )
@@ -82,7 +184,7 @@ class ReparseFileTrigger implements FileDocumentManagerListener
       // we check for LightVirtualFile because if that's the case IJ loses its mind if two or more projects are open
       // because a light vfile can only belong to one project, so our next call to PsiDocumentManager.getInstance( _project ).getPsiFile
       // below would otherwise log an ugly error (but not throw), thus we avoid the ugly error here
-      return false;
+      return null;
     }
 
     try
@@ -94,12 +196,12 @@ class ReparseFileTrigger implements FileDocumentManagerListener
         if( fileExt != null && fileExt.equalsIgnoreCase( "dbconfig" ) )
         {
           // DbConfig file changed
-          return true;
+          return Trigger.DbConfig;
         }
         else if( Definitions.BUILD_PROPERTIES.equalsIgnoreCase( vfile.getName() ) )
         {
           // Build.properties file changed
-          return true;
+          return Trigger.BuildProperties;
         }
       }
     }
@@ -109,6 +211,12 @@ class ReparseFileTrigger implements FileDocumentManagerListener
       // - for some reason due to "Recursive file view provider creation"
       // - "Light files should have PSI only in one project"
     }
-    return false;
+    return null;
+  }
+
+  private enum Trigger
+  {
+    DbConfig,
+    BuildProperties
   }
 }
@@ -23,10 +23,13 @@
 
 package manifold.ij.extensions;
 
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
 import com.intellij.injected.editor.VirtualFileWindow;
 import com.intellij.openapi.application.AccessToken;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -38,26 +41,30 @@ import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
 import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
 import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
 import com.intellij.psi.impl.PsiDocumentTransactionListener;
+import com.intellij.psi.impl.PsiModificationTrackerImpl;
 import com.intellij.testFramework.LightVirtualFile;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 import manifold.api.fs.IFile;
 import manifold.api.fs.IResource;
+import manifold.api.host.RefreshKind;
 import manifold.ij.core.ManProject;
 import manifold.ij.fs.IjFile;
-import manifold.ij.util.DelayedRunner;
 import manifold.ij.util.FileUtil;
+import manifold.ij.util.RefreshScheduler;
 import manifold.ij.util.ReparseUtil;
 import manifold.ij.util.SlowOperationsUtil;
 
 public class FileModificationManager implements PsiDocumentTransactionListener, BulkFileListener
 {
-  @SuppressWarnings("FieldCanBeLocal")
-  private static int TYPE_REFRESH_DELAY_MS = 0;
+  // external modifications, e.g., from a VCS update, settling within this delay refresh as one batch per module
+  private static final int BULK_REFRESH_DELAY_MS = 200;
 
-  private final DelayedRunner _typeRefresher = new DelayedRunner();
+  private final RefreshScheduler<VirtualFile> _bulkRefresher;
   private final Project _project;
   private final ManProject _manProject;
   private ManRefreshListener _manRefresher;
@@ -84,6 +91,7 @@ public class FileModificationManager implements PsiDocumentTransactionListener,
     _project = project.getNativeProject();
     _manProject = ManProject.manProjectFrom( _project );
     _manRefresher = new ManRefreshListener( _project );
+    _bulkRefresher = new RefreshScheduler<>( this::refreshModified );
   }
 
   public ManRefreshListener getManRefresher()
@@ -91,9 +99,51 @@ public class FileModificationManager implements PsiDocumentTransactionListener,
     return _manRefresher;
   }
 
-  private String getRefreshTaskId( VirtualFile virtualFile )
+  /**
+   * Refreshes are batched per module, files outside modules share the project's batch
+   */
+  private Object getRefreshGroup( VirtualFile virtualFile )
   {
-    return virtualFile.getPath();
+    Module module = ModuleUtilCore.findModuleForFile( virtualFile, _project );
+    return module == null ? _project : module;
+  }
+
+  /**
+   * Refreshes a module's batch of externally modified files with a single modification request. Called on a pooled
+   * thread, the refresh runs on the EDT in smart mode as it does for other VFS events. Since no PSI change follows the
+   * delayed refresh, PSI caches depending on the types are invalidated and highlighting is restarted afterward.
+   */
+  private void refreshModified( List<VirtualFile> files )
+  {
+    if( _project.isDisposed() )
+    {
+      return;
+    }
+
+    DumbService.getInstance( _project ).smartInvokeLater( () -> {
+      if( _project.isDisposed() )
+      {
+        return;
+      }
+
+      List<IResource> batch = new ArrayList<>();
+      for( VirtualFile file : files )
+      {
+        if( file.isValid() )
+        {
+          batch.add( FileUtil.toIResource( _project, file ) );
+        }
+      }
+      if( batch.isEmpty() )
+      {
+        return;
+      }
+
+      fireBatchEvent( batch, RefreshKind.MODIFICATION );
+      ApplicationManager.getApplication().runWriteAction( () ->
+        ((PsiModificationTrackerImpl)PsiManager.getInstance( _project ).getModificationTracker()).incCounter() );
+      DaemonCodeAnalyzer.getInstance( _project ).restart();
+    } );
   }
 
   // PsiDocumentTransactionListener
@@ -112,15 +162,8 @@ public class FileModificationManager implements PsiDocumentTransactionListener,
       file = ((VirtualFileWindow)file).getDelegate();
     }
 
-    final Runnable refresher = new Refresher( _project, file );
-    if( TYPE_REFRESH_DELAY_MS == 0 )
-    {
-      refresher.run();
-    }
-    else
-    {
-      _typeRefresher.scheduleTask( getRefreshTaskId( file ), TYPE_REFRESH_DELAY_MS, refresher );
-    }
+    // editor changes refresh inline, while the document is committed, so highlighting never sees stale types
+    new Refresher( _project, file ).run();
 
 //    // process inner class changes
 //    if( psiFile instanceof PsiClassOwner )
@@ -199,34 +242,83 @@ public class FileModificationManager implements PsiDocumentTransactionListener,
       return;
     }
 
+    // consecutive creations and deletions are refreshed as a batch, e.g., for a VCS update, modifications are coalesced
+    // per module across event lists, see refreshModified()
+    List<IResource> batch = new ArrayList<>();
+    RefreshKind batchKind = null;
     for( VFileEvent event : events )
     {
       final VirtualFile file = event.getFile();
       if( !ignoreFile( file ) )
       {
-        if( event instanceof VFileCreateEvent )
+        RefreshKind kind = getRefreshKind( event );
+        if( kind == RefreshKind.MODIFICATION )
+        {
+          _bulkRefresher.schedule( getRefreshGroup( file ), file, BULK_REFRESH_DELAY_MS );
+          continue;
+        }
+
+        if( kind != batchKind )
         {
-          fireCreatedEvent( file );
+          fireBatchEvent( batch, batchKind );
+          batch = new ArrayList<>();
+          batchKind = kind;
         }
-        else if( event instanceof VFileDeleteEvent )
+
+        if( kind != null )
         {
-          fireDeletedEvent( file );
+          batch.add( FileUtil.toIResource( _project, file ) );
         }
         else if( event instanceof VFileCopyEvent )
         {
           processFileCopyEvent( (VFileCopyEvent)event );
         }
-        else if( isMoveOrRename( event ) )
+        else
         {
           SlowOperationsUtil.allowSlowOperation( "manifold.fragments",
             () -> processRenameAfter( event ) );
         }
-        else // modified
-        {
-          ApplicationManager.getApplication().runReadAction( () -> fireModifiedEvent( file ) );
-        }
       }
     }
+    fireBatchEvent( batch, batchKind );
+  }
+
+  /**
+   * @return The kind of refresh for {@code event} or null if the event is a copy, move or rename, which are processed
+   * individually
+   */
+  private RefreshKind getRefreshKind( VFileEvent event )
+  {
+    if( event instanceof VFileCreateEvent )
+    {
+      return RefreshKind.CREATION;
+    }
+    if( event instanceof VFileDeleteEvent )
+    {
+      return RefreshKind.DELETION;
+    }
+    if( event instanceof VFileCopyEvent || isMoveOrRename( event ) )
+    {
+      return null;
+    }
+    return RefreshKind.MODIFICATION;
+  }
+
+  private void fireBatchEvent( List<IResource> batch, RefreshKind kind )
+  {
+    if( batch.isEmpty() )
+    {
+      return;
+    }
+
+    if( kind == RefreshKind.MODIFICATION )
+    {
+      ApplicationManager.getApplication().runReadAction( () -> _manRefresher.refresh( batch, kind ) );
+    }
+    else
+    {
+      _manRefresher.refresh( batch, kind );
+    }
   }
 
   private boolean ignoreFile( VirtualFile file )
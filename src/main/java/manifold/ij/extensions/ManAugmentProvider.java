@@ -41,7 +41,6 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
-import manifold.api.fs.IFile;
 import manifold.api.gen.AbstractSrcMethod;
 import manifold.api.gen.SrcAnnotationExpression;
 import manifold.api.gen.SrcClass;
@@ -57,21 +56,17 @@ import manifold.ext.rt.api.MethodSignature;
 import manifold.ext.rt.api.ThisClass;
 import manifold.internal.javac.ManAttr;
 import manifold.rt.api.Array;
-import manifold.api.type.ITypeManifold;
 import manifold.rt.api.SourcePosition;
-import manifold.ext.IExtensionClassProducer;
 import manifold.ext.rt.api.Extension;
 import manifold.ext.rt.api.This;
 import manifold.ij.core.ManModule;
 import manifold.ij.core.ManProject;
-import manifold.ij.fs.IjFile;
 import manifold.ij.psi.ManLightMethodBuilder;
 import manifold.rt.api.util.ManClassUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 
-import static manifold.api.type.ContributorKind.Supplemental;
 import static manifold.ij.util.ManPsiGenerationUtil.*;
 
 /**
@@ -136,7 +131,7 @@ public class ManAugmentProvider extends PsiAugmentProvider
     addPsiExtensionChangeListener( psiClass.getProject() );
 
 //Without caching:
-//    LinkedHashMap<String, PsiMethod> augFeatures = new LinkedHashMap<>();
+//    LinkedHashMap<ExtensionMethodKey, PsiMethod> augFeatures = new LinkedHashMap<>();
 //    addMethods( fqnClass, psiClass, augFeatures );
 //    return new ArrayList<>( (Collection<? extends E>) augFeatures.values() );
 
@@ -155,7 +150,7 @@ public class ManAugmentProvider extends PsiAugmentProvider
           fqn = ((PsiExtensibleClass)element).getQualifiedName();
         }
 
-        LinkedHashMap<String, PsiMethod> augFeatures = new LinkedHashMap<>();
+        LinkedHashMap<ExtensionMethodKey, PsiMethod> augFeatures = new LinkedHashMap<>();
         List<Object> dependencies = new ArrayList<>( addMethods( fqn, psiClass, augFeatures ) );
         dependencies.add( psiClass );
 
@@ -176,74 +171,35 @@ public class ManAugmentProvider extends PsiAugmentProvider
     ExtensionClassPsiListener extensionClassPsiListener = _mapExtClassListeners.get( project );
     if( extensionClassPsiListener == null )
     {
-      extensionClassPsiListener = new ExtensionClassPsiListener();
+      extensionClassPsiListener = new ExtensionClassPsiListener( new ManExtensionClassIndex( project ) );
       PsiManager.getInstance( project ).addPsiTreeChangeListener( extensionClassPsiListener, project );
       _mapExtClassListeners.put( project, extensionClassPsiListener );
     }
   }
 
-  private List<PsiClass> addMethods( String fqn, PsiClass psiClass, LinkedHashMap<String, PsiMethod> augFeatures )
+  private List<PsiClass> addMethods( String fqn, PsiClass psiClass, LinkedHashMap<ExtensionMethodKey, PsiMethod> augFeatures )
   {
-    ManProject manProject = ManProject.manProjectFrom( psiClass.getProject() );
+    Project project = psiClass.getProject();
+    ManExtensionClassIndex index = _mapExtClassListeners.get( project ).getIndex();
     List<PsiClass> extensionClasses = new ArrayList<>();
-    for( ManModule manModule : manProject.getModules().values() )
+    for( ManExtensionClassIndex.Contribution contribution : index.getContributions( fqn, psiClass ) )
     {
-      extensionClasses.addAll( addMethods( fqn, psiClass, augFeatures, manModule ) );
-    }
-    return extensionClasses;
-  }
-
-  private List<PsiClass> addMethods( String fqn, PsiClass psiClass, LinkedHashMap<String, PsiMethod> augFeatures, ManModule manModule )
-  {
-    List<PsiClass> extensionClasses = new ArrayList<>();
-
-    for( ITypeManifold tm : manModule.getTypeManifolds() )
-    {
-      if( tm.getContributorKind() == Supplemental )
+      ManModule manModule = contribution.module();
+      if( contribution instanceof ManExtensionClassIndex.ExtensionFile extensionFile )
       {
-        PsiClass topLevelClass = PsiUtil.getTopLevelClass( psiClass );                 // IJ's name for the array class
-        if( topLevelClass != null && (tm.isType( topLevelClass.getQualifiedName() ) || "__Array__".equals( psiClass.getName() )) )
+        VirtualFile vFile = extensionFile.file();
+        if( vFile == null || !vFile.isValid() )
         {
-          List<IFile> files = tm.findFilesForType( fqn );
-          for( IFile file : files )
-          {
-            VirtualFile vFile = ((IjFile)file.getPhysicalFile()).getVirtualFile();
-            if( !vFile.isValid() )
-            {
-              continue;
-            }
-
-            PsiFile psiFile = PsiManager.getInstance( manModule.getIjModule().getProject() ).findFile( vFile );
-            PsiJavaFile psiJavaFile = (PsiJavaFile)psiFile;
-            if( psiJavaFile != null )
-            {
-              PsiClass[] classes = psiJavaFile.getClasses();
-              if( classes.length > 0 )
-              {
-                String topLevelFqn = ManifoldPsiClassCache.findTopLevelFqn( tm, fqn );
-                String innerSuffix = fqn.substring( topLevelFqn.length() );
-
-                PsiClass extClass = findExtClass( classes[0], classes[0].getQualifiedName() + innerSuffix );
-                if( extClass != null )
-                {
-                  extensionClasses.add( extClass );
-                  addMethods( psiClass, augFeatures, manModule, extClass );
-                }
-              }
-            }
-          }
+          continue;
         }
-      }
-      else if( tm instanceof IExtensionClassProducer )
-      {
-        IExtensionClassProducer ecp = (IExtensionClassProducer)tm;
-        if( ecp.isExtendedType( fqn ) )
+
+        PsiFile psiFile = PsiManager.getInstance( project ).findFile( vFile );
+        if( psiFile instanceof PsiJavaFile psiJavaFile )
         {
-          Set<String> extensionClassNames = ecp.getExtensionClasses( fqn );
-          for( String extension : extensionClassNames )
+          PsiClass[] classes = psiJavaFile.getClasses();
+          if( classes.length > 0 )
           {
-            PsiClass extPsiClass = ManifoldPsiClassCache.getPsiClass( manModule, extension );
-            PsiClass extClass = findExtClass( extPsiClass, extension );
+            PsiClass extClass = findExtClass( classes[0], classes[0].getQualifiedName() + extensionFile.innerSuffix() );
             if( extClass != null )
             {
               extensionClasses.add( extClass );
@@ -252,6 +208,17 @@ public class ManAugmentProvider extends PsiAugmentProvider
           }
         }
       }
+      else if( contribution instanceof ManExtensionClassIndex.ProducedExtension producedExtension )
+      {
+        String extension = producedExtension.extensionFqn();
+        PsiClass extPsiClass = ManifoldPsiClassCache.getPsiClass( manModule, extension );
+        PsiClass extClass = extPsiClass == null ? null : findExtClass( extPsiClass, extension );
+        if( extClass != null )
+        {
+          extensionClasses.add( extClass );
+          addMethods( psiClass, augFeatures, manModule, extClass );
+        }
+      }
     }
     return extensionClasses;
   }
@@ -288,7 +255,7 @@ public class ManAugmentProvider extends PsiAugmentProvider
    * </ul>
    *
    * <p>Extension methods are converted to synthetic {@link PsiMethod}s and
-   * deduplicated using a rendered signature key. If a method is already present
+   * deduplicated using a structural signature key. If a method is already present
    * (e.g., from another module root), the existing method is updated to reference
    * the additional {@link ManModule} instead of creating a duplicate.
    *
@@ -315,7 +282,7 @@ public class ManAugmentProvider extends PsiAugmentProvider
    * @param manModule   the contributing module
    * @param extClass    the class declaring extension logic (may be {@code null})
    */
-  private void addMethods( PsiClass psiClass, LinkedHashMap<String, PsiMethod> augFeatures, ManModule manModule, PsiClass extClass )
+  private void addMethods( PsiClass psiClass, LinkedHashMap<ExtensionMethodKey, PsiMethod> augFeatures, ManModule manModule, PsiClass extClass )
   {
     if( extClass == null )
     {
@@ -324,14 +291,8 @@ public class ManAugmentProvider extends PsiAugmentProvider
 
     addInterfaceExtensions( psiClass, extClass );
 
-    String qualifiedName = extClass.getQualifiedName();
-    if( qualifiedName == null )
-    {
-      return;
-    }
-
-    SrcClass srcExtClass = new StubBuilder().make( qualifiedName, manModule, false );
-    if( srcExtClass == null )
+    ExtensionTemplate template = getExtensionTemplate( manModule, extClass, false );
+    if( template == null )
     {
       return;
     }
@@ -343,7 +304,7 @@ public class ManAugmentProvider extends PsiAugmentProvider
     }
 
     // Add normal extension methods declared directly in the @Extension class.
-    for( AbstractSrcMethod<?> m : srcExtClass.getMethods() )
+    for( MethodTemplate m : template.methods() )
     {
       addMethod( psiClass, augFeatures, manModule, extClass, false, m, scratchClass );
     }
@@ -352,35 +313,142 @@ public class ManAugmentProvider extends PsiAugmentProvider
     addMethodsFromExternalSource( psiClass, augFeatures, manModule, extClass, scratchClass );
   }
 
-  private void addMethod( PsiClass psiClass, LinkedHashMap<String, PsiMethod> augFeatures, ManModule manModule,
+  /**
+   * The stub of an extension class is the same for every class it is planted in, only the extended class's type
+   * parameters differ. So the stub's methods are made once and shared until the extension class changes.
+   *
+   * @param isExtensionSource If true, {@code extClass} is the source of an {@code @ExtensionSource}, its
+   *                          {@code public static} methods are candidates, see {@link #hasThisAnnotation}
+   */
+  private ExtensionTemplate getExtensionTemplate( ManModule manModule, PsiClass extClass, boolean isExtensionSource )
+  {
+    String qualifiedName = extClass.getQualifiedName();
+    if( qualifiedName == null )
+    {
+      return null;
+    }
+
+    // not the extended class's modification count, an @ExtensionSource's template is shared between extended classes
+    ExtensionClassPsiListener listener = _mapExtClassListeners.get( extClass.getProject() );
+    PsiFile file = extClass.getContainingFile();
+    long fileStamp = file == null ? -1 : file.getModificationStamp();
+    TemplateKey key = new TemplateKey( manModule, qualifiedName, isExtensionSource );
+    ExtensionTemplate template = listener.getTemplate( key );
+    if( template != null && template.extClass() == extClass && template.fileStamp() == fileStamp )
+    {
+      return template;
+    }
+
+    SrcClass srcExtClass = new StubBuilder().make( qualifiedName, manModule, false );
+    if( srcExtClass == null )
+    {
+      return null;
+    }
+
+    List<MethodTemplate> methods = new ArrayList<>();
+    for( AbstractSrcMethod<?> m : srcExtClass.getMethods() )
+    {
+      if( isExtensionSource )
+      {
+        if( (m.getModifiers() & Modifier.STATIC) == 0 ||
+          (m.getModifiers() & Modifier.PUBLIC) == 0 ||
+          m.getParameters().isEmpty() )
+        {
+          continue;
+        }
+      }
+      methods.add( new MethodTemplate( m, findExtensionPsiMethod( extClass, m ) ) );
+    }
+    template = new ExtensionTemplate( extClass, fileStamp, methods );
+    listener.putTemplate( key, template );
+    return template;
+  }
+
+  private void addMethod( PsiClass psiClass, LinkedHashMap<ExtensionMethodKey, PsiMethod> augFeatures, ManModule manModule,
                           PsiClass extClass, boolean isExtensionSource,
-                          AbstractSrcMethod<?> m, SrcClass scratchClass )
+                          MethodTemplate template, SrcClass scratchClass )
   {
-    SrcMethod srcMethod = createExtensionMethod( scratchClass, m, psiClass );
-    if( srcMethod != null )
+    AbstractSrcMethod<?> m = template.srcMethod();
+    String extendedFqn = psiClass.getQualifiedName();
+    if( !isExtensionMethod( m, extendedFqn, isExtensionSource ) )
     {
-      StringBuilder key = new StringBuilder();
-      srcMethod.render( key, 0 );
-      PsiMethod existingMethod = augFeatures.get( key.toString() );
-      if( existingMethod != null )
+      return;
+    }
+
+    boolean isInstanceExtensionMethod = isInstanceExtensionMethod( m, extendedFqn, isExtensionSource );
+    boolean skipFirstParam = isInstanceExtensionMethod || hasThisClassAnnotation( m );
+    PsiTypeParameterList typeParameterList = getTypeParameterList( psiClass );
+    PsiTypeParameter[] extendedTypeParams = typeParameterList == null
+      ? PsiTypeParameter.EMPTY_ARRAY
+      : typeParameterList.getTypeParameters();
+
+    ExtensionMethodKey key = ExtensionMethodKey.make( m, isInstanceExtensionMethod, skipFirstParam, extendedTypeParams.length );
+    PsiMethod existingMethod = augFeatures.get( key );
+    if( existingMethod != null )
+    {
+      // already added from another module root, the method has multiple module refs e.g., ManStringExt
+      ((ManLightMethodBuilder)existingMethod).withAdditionalModule( manModule );
+      return;
+    }
+
+    PsiMethod plantedMethod = null;
+    PsiMethod extPsiMethod = template.psiMethod();
+    if( extPsiMethod != null )
+    {
+      plantedMethod = plantExtensionMethodInPsiClass( manModule, extPsiMethod, psiClass, extendedTypeParams,
+        isInstanceExtensionMethod, skipFirstParam );
+    }
+    if( plantedMethod == null )
+    {
+      // fall back to rendering the method and parsing it in the context of psiClass
+      SrcMethod srcMethod = createExtensionMethod( scratchClass, m, psiClass, isExtensionSource );
+      PsiMethod extMethod = srcMethod == null ? null : makePsiMethod( srcMethod, psiClass );
+      if( extMethod != null )
       {
-        // already added from another module root, the method has multiple module refs e.g., ManStringExt
-        ((ManLightMethodBuilder)existingMethod).withAdditionalModule( manModule );
+        PsiMethod navMethod = findExtensionMethodNavigationElement( extClass, extMethod, isExtensionSource );
+        plantedMethod = plantMethodInPsiClass( manModule, extMethod, psiClass, navMethod );
       }
-      else
+    }
+    if( plantedMethod != null )
+    {
+      augFeatures.put( key, plantedMethod );
+    }
+  }
+
+  /**
+   * @return The method in {@code extClass} corresponding with {@code m}, or null if there isn't exactly one
+   */
+  private PsiMethod findExtensionPsiMethod( PsiClass extClass, AbstractSrcMethod<?> m )
+  {
+    List<SrcParameter> srcParams = m.getParameters();
+    PsiMethod match = null;
+    outer:
+    for( PsiMethod psiMethod : extClass.findMethodsByName( m.getSimpleName(), false ) )
+    {
+      PsiParameter[] params = psiMethod.getParameterList().getParameters();
+      if( params.length != srcParams.size() )
+      {
+        continue;
+      }
+      for( int i = 0; i < params.length; i++ )
       {
-        PsiMethod extMethod = makePsiMethod( srcMethod, psiClass );
-        if( extMethod != null )
+        SrcParameter srcParam = srcParams.get( i );
+        if( !srcParam.getSimpleName().equals( params[i].getName() ) ||
+          !srcParam.getType().getName().equals( new StubBuilder().makeSrcType( params[i].getType() ).getName() ) )
         {
-          PsiMethod navMethod = findExtensionMethodNavigationElement( extClass, extMethod, isExtensionSource );
-          PsiMethod plantedMethod = plantMethodInPsiClass( manModule, extMethod, psiClass, navMethod );
-          augFeatures.put( key.toString(), plantedMethod );
+          continue outer;
         }
       }
+      if( match != null )
+      {
+        return null;
+      }
+      match = psiMethod;
     }
+    return match;
   }
 
-  private void addMethodsFromExternalSource( PsiClass psiClass, LinkedHashMap<String, PsiMethod> augFeatures, ManModule manModule, PsiClass extClass, SrcClass scratchClass )
+  private void addMethodsFromExternalSource( PsiClass psiClass, LinkedHashMap<ExtensionMethodKey, PsiMethod> augFeatures, ManModule manModule, PsiClass extClass, SrcClass scratchClass )
   {
     // Process @ExtensionSource annotations declared on the extension class.
     // These allow extension methods to be sourced from external classes.
@@ -394,7 +462,11 @@ public class ManAugmentProvider extends PsiAugmentProvider
       {
         continue;
       }
-      SrcClass sourceClass = new StubBuilder().make( extensionClass.getQualifiedName(), manModule, false );
+      ExtensionTemplate sourceTemplate = getExtensionTemplate( manModule, extensionClass, true );
+      if( sourceTemplate == null )
+      {
+        continue;
+      }
       List<PsiAnnotation> sourceMethodAnnos = getParameterArrayAsList( anno, ExtensionSource.methods, PsiAnnotation.class );
       if( sourceMethodAnnos == null )
       {
@@ -402,16 +474,13 @@ public class ManAugmentProvider extends PsiAugmentProvider
       }
 
       // Collect candidate extension methods:
-      // - public static
+      // - public static (the template has only these)
       // - first parameter matches the target class
       // These methods are eligible to become extension methods.
-      List<AbstractSrcMethod<?>> sourceMethods = ((List<AbstractSrcMethod<?>>)(List)sourceClass.getMethods())
+      List<MethodTemplate> sourceMethods = sourceTemplate.methods()
         .stream()
         .filter( method ->
-          (method.getModifiers() & Modifier.STATIC) != 0 &&
-          (method.getModifiers() & Modifier.PUBLIC) != 0 &&
-          !method.getParameters().isEmpty() &&
-          method.getParameters().getFirst().getType().getFqName().equals( psiClass.getQualifiedName() ) )
+          method.srcMethod().getParameters().getFirst().getType().getFqName().equals( psiClass.getQualifiedName() ) )
         .toList();
 
       // Apply INCLUDE / EXCLUDE filtering if explicit method signatures are defined.
@@ -436,7 +505,8 @@ public class ManAugmentProvider extends PsiAugmentProvider
 
         // Filter candidate methods according to configured signatures
         // and the specified ExtensionMethodType (INCLUDE or EXCLUDE).
-        sourceMethods = sourceMethods.stream().filter( sourceMethod -> {
+        sourceMethods = sourceMethods.stream().filter( sourceTemplateMethod -> {
+           AbstractSrcMethod<?> sourceMethod = sourceTemplateMethod.srcMethod();
            boolean match = methodSignatures.stream().anyMatch( methodSignature -> {
              if( !sourceMethod.getSimpleName().equals( methodSignature.methodName ) )
              {
@@ -457,10 +527,8 @@ public class ManAugmentProvider extends PsiAugmentProvider
       }
 
       // Add the extension methods
-      for( AbstractSrcMethod<?> m : sourceMethods )
+      for( MethodTemplate m : sourceMethods )
       {
-        // Mark the first parameter with @This so the method is recognized and treated as an extension method.
-        m.getParameters().getFirst().addAnnotation( This.class.getName() );
         addMethod( psiClass, augFeatures, manModule, extensionClass, true, m, scratchClass );
       }
     }
@@ -468,6 +536,54 @@ public class ManAugmentProvider extends PsiAugmentProvider
 
   private record MethodDescription(String methodName, List<String> parameterFqns) { }
 
+  private record TemplateKey( ManModule module, String fqn, boolean isExtensionSource ) { }
+
+  /**
+   * The stub methods of an extension class, see {@link #getExtensionTemplate}, valid while {@code extClass} and its file's
+   * modification stamp are unchanged
+   */
+  private record ExtensionTemplate( PsiClass extClass, long fileStamp, List<MethodTemplate> methods ) { }
+
+  /**
+   * @param psiMethod The extension class's method corresponding with {@code srcMethod}, null if not found, in which
+   *                  case the planted method is parsed from {@code srcMethod}
+   */
+  private record MethodTemplate( AbstractSrcMethod<?> srcMethod, PsiMethod psiMethod ) { }
+
+  /**
+   * Identifies an extension method as planted in the extended class, the name, static-ness, type variable count, and
+   * parameter and return types, without the {@code @This} or {@code @ThisClass} parameter.
+   */
+  private record ExtensionMethodKey( String name, boolean isStatic, int typeVarCount, List<String> paramTypes, String returnType )
+  {
+    static ExtensionMethodKey make( AbstractSrcMethod<?> m, boolean isInstance, boolean skipFirstParam, int extendedTypeVarCount )
+    {
+      List<SrcParameter> params = m.getParameters();
+      List<String> paramTypes = new ArrayList<>( params.size() );
+      for( int i = skipFirstParam ? 1 : 0; i < params.size(); i++ )
+      {
+        paramTypes.add( typeText( params.get( i ).getType() ) );
+      }
+      int typeVarCount = m.getTypeVariables().size();
+      if( isInstance )
+      {
+        typeVarCount = Math.max( 0, typeVarCount - extendedTypeVarCount );
+      }
+      return new ExtensionMethodKey( m.getSimpleName(), !isInstance, typeVarCount, paramTypes, typeText( m.getReturnType() ) );
+    }
+
+    private static String typeText( SrcType type )
+    {
+      if( type == null )
+      {
+        return "";
+      }
+      StringBuilder sb = new StringBuilder();
+      type.render( sb, 0 );
+      return sb.toString();
+    }
+  }
+
   /**
    * Returns all annotations of the specified {@code annotationType} declared on
    * {@code extClass}, including those provided via a repeatable container annotation.
@@ -596,9 +712,9 @@ public class ManAugmentProvider extends PsiAugmentProvider
     psiClass.putUserData( KEY_MAN_INTERFACE_EXTENSIONS, ifaceExtensions );
   }
 
-  private SrcMethod createExtensionMethod( SrcClass srcClass, AbstractSrcMethod<?> method, PsiClass extendedType )
+  private SrcMethod createExtensionMethod( SrcClass srcClass, AbstractSrcMethod<?> method, PsiClass extendedType, boolean isExtensionSource )
   {
-    if( !isExtensionMethod( method, extendedType.getQualifiedName() ) )
+    if( !isExtensionMethod( method, extendedType.getQualifiedName(), isExtensionSource ) )
     {
       return null;
     }
@@ -609,7 +725,7 @@ public class ManAugmentProvider extends PsiAugmentProvider
 
     long modifiers = method.getModifiers();
 
-    boolean isInstanceExtensionMethod = isInstanceExtensionMethod( method, extendedType.getQualifiedName() );
+    boolean isInstanceExtensionMethod = isInstanceExtensionMethod( method, extendedType.getQualifiedName(), isExtensionSource );
 
     if( extendedType.isInterface() && isInstanceExtensionMethod )
     {
@@ -689,7 +805,7 @@ public class ManAugmentProvider extends PsiAugmentProvider
     }
   }
 
-  private boolean isExtensionMethod( AbstractSrcMethod<?> method, String extendedType )
+  private boolean isExtensionMethod( AbstractSrcMethod<?> method, String extendedType, boolean isExtensionSource )
   {
     if( !Modifier.isStatic( (int)method.getModifiers() ) || Modifier.isPrivate( (int)method.getModifiers() ) )
     {
@@ -701,20 +817,24 @@ public class ManAugmentProvider extends PsiAugmentProvider
       return true;
     }
 
-    return hasThisAnnotation( method, extendedType ) || hasThisClassAnnotation( method );
+    return hasThisAnnotation( method, extendedType, isExtensionSource ) || hasThisClassAnnotation( method );
   }
 
-  private boolean isInstanceExtensionMethod( AbstractSrcMethod<?> method, String extendedType )
+  private boolean isInstanceExtensionMethod( AbstractSrcMethod<?> method, String extendedType, boolean isExtensionSource )
   {
     if( !Modifier.isStatic( (int)method.getModifiers() ) || Modifier.isPrivate( (int)method.getModifiers() ) )
     {
       return false;
     }
 
-    return hasThisAnnotation( method, extendedType );
+    return hasThisAnnotation( method, extendedType, isExtensionSource );
   }
 
-  private boolean hasThisAnnotation( AbstractSrcMethod<?> method, String extendedType )
+  /**
+   * @param isExtensionSource If true, {@code method} is from an {@code @ExtensionSource} class, its first parameter is
+   *                          treated as {@code @This} without modifying the method, which may be a shared stub
+   */
+  private boolean hasThisAnnotation( AbstractSrcMethod<?> method, String extendedType, boolean isExtensionSource )
   {
     List<SrcParameter> params = method.getParameters();
     if( params.size() == 0 )
@@ -722,7 +842,7 @@ public class ManAugmentProvider extends PsiAugmentProvider
       return false;
     }
     SrcParameter param = params.get( 0 );
-    if( !param.hasAnnotation( This.class ) )
+    if( !isExtensionSource && !param.hasAnnotation( This.class ) )
     {
       return false;
     }
@@ -1013,11 +1133,26 @@ public class ManAugmentProvider extends PsiAugmentProvider
   }
 
   /**
-   * Used to keep track of when a new extension class is created for a given psi class.
+   * Used to keep track of when a new extension class is created for a given psi class. Also keeps the project's
+   * {@link ManExtensionClassIndex} current with changes to extension classes.
    */
   private static class ExtensionClassPsiListener implements PsiTreeChangeListener
   {
+    private static final int MAX_TEMPLATES = 10_000;
+
     private final Map<String, Long> _mapFqnToModCount = new ConcurrentHashMap<>();
+    private final Map<TemplateKey, ExtensionTemplate> _templates = new ConcurrentHashMap<>();
+    private final ManExtensionClassIndex _index;
+
+    private ExtensionClassPsiListener( ManExtensionClassIndex index )
+    {
+      _index = index;
+    }
+
+    private ManExtensionClassIndex getIndex()
+    {
+      return _index;
+    }
 
     private long getModCount( String fqn )
     {
@@ -1025,6 +1160,21 @@ public class ManAugmentProvider extends PsiAugmentProvider
       return modCount == null ? 0L : modCount;
     }
 
+    private ExtensionTemplate getTemplate( TemplateKey key )
+    {
+      return _templates.get( key );
+    }
+
+    private void putTemplate( TemplateKey key, ExtensionTemplate template )
+    {
+      if( _templates.size() >= MAX_TEMPLATES )
+      {
+        // modules are replaced when the project structure changes, drop templates kept for stale modules
+        _templates.clear();
+      }
+      _templates.put( key, template );
+    }
+
     @Override
     public void beforeChildAddition( @NotNull PsiTreeChangeEvent event )
     {
@@ -1112,6 +1262,7 @@ public class ManAugmentProvider extends PsiAugmentProvider
           if( packageName != null )
           {
             String extendedClassFqn = ExtensionClassAnnotator.getExtendedClassName( packageName );
+            _index.invalidate( extendedClassFqn );
             Long modCount = _mapFqnToModCount.computeIfAbsent( extendedClassFqn, key -> 0L );
             _mapFqnToModCount.put( extendedClassFqn, modCount + 1 );
           }
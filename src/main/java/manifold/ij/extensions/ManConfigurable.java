@@ -80,6 +80,24 @@ public class ManConfigurable implements Configurable
       ManResolveCache.setExperimentalFeaturesEnabled( experimentalFeaturesEnabled );
     }
 
+    boolean generatedSourceCacheEnabled = _manifoldPanel.getGeneratedSourceCache().isSelected();
+    if( ManGeneratedSourceCache.isEnabled() != generatedSourceCacheEnabled )
+    {
+      ManGeneratedSourceCache.setEnabled( generatedSourceCacheEnabled );
+    }
+
+    boolean warmUpEnabled = _manifoldPanel.getWarmUp().isSelected();
+    if( ManTypeWarmUp.isEnabled() != warmUpEnabled )
+    {
+      ManTypeWarmUp.setEnabled( warmUpEnabled );
+    }
+
+    int warmUpConcurrency = (Integer)_manifoldPanel.getWarmUpConcurrency().getValue();
+    if( ManTypeWarmUp.getConcurrency() != warmUpConcurrency )
+    {
+      ManTypeWarmUp.setConcurrency( warmUpConcurrency );
+    }
+
     boolean suppressVersionCheckEnabled = _manifoldPanel.getSuppressManifoldVersionCheck().isSelected();
     if( ManLibraryChecker.isSuppressVersionCheck() != suppressVersionCheckEnabled )
     {
@@ -95,6 +113,9 @@ public class ManConfigurable implements Configurable
   {
     private JCheckBox _mode;
     private JCheckBox _experimentalFeatures;
+    private JCheckBox _generatedSourceCache;
+    private JCheckBox _warmUp;
+    private JSpinner _warmUpConcurrency;
     private JCheckBox _suppressManifoldVersionCheck;
     private TextFieldWithBrowseButton _androidBuildDirectory;
     private boolean _modified;
@@ -131,6 +152,36 @@ public class ManConfigurable implements Configurable
       _experimentalFeatures.setSelected( ManResolveCache.isExperimentalFeaturesEnabled() );
       _experimentalFeatures.addChangeListener( e -> _modified = true );
 
+      c.gridy = y++;
+      add( _generatedSourceCache = new JCheckBox( "Cache generated types between sessions" ), c );
+      _generatedSourceCache.setToolTipText( "Saves the Java source generated from resource files such as JSON, " +
+                                            "GraphQL and YAML to disk so that reopening the project does not " +
+                                            "regenerate types whose resource files have not changed." );
+      _generatedSourceCache.setSelected( ManGeneratedSourceCache.isEnabled() );
+      _generatedSourceCache.addChangeListener( e -> _modified = true );
+
+      c.gridy = y++;
+      add( _warmUp = new JCheckBox( "Generate types in the background after opening a project" ), c );
+      _warmUp.setToolTipText( "After indexing, generates all manifold types ahead of use so that opening " +
+                              "and editing files does not wait on type generation. The task can be " +
+                              "cancelled from the status bar." );
+      _warmUp.setSelected( ManTypeWarmUp.isEnabled() );
+      _warmUp.addChangeListener( e -> {
+        _modified = true;
+        _warmUpConcurrency.setEnabled( _warmUp.isSelected() );
+      } );
+
+      c.gridy = y++;
+      c.insets = JBUI.insets( 2, 24, 0, 0 );
+      JPanel concurrencyPanel = new JPanel( new FlowLayout( FlowLayout.LEFT, 4, 0 ) );
+      concurrencyPanel.add( new JLabel( "Threads:" ) );
+      concurrencyPanel.add( _warmUpConcurrency = new JSpinner( new SpinnerNumberModel(
+        ManTypeWarmUp.getConcurrency(), 1, ManTypeWarmUp.getMaxConcurrency(), 1 ) ) );
+      add( concurrencyPanel, c );
+      _warmUpConcurrency.setEnabled( _warmUp.isSelected() );
+      _warmUpConcurrency.addChangeListener( e -> _modified = true );
+      c.insets = JBUI.insets( 2, 2, 0, 0 );
+
       c.gridy = y++;
       add( _suppressManifoldVersionCheck = new JCheckBox( "Suppress Manifold version check" ), c );
       _suppressManifoldVersionCheck.setSelected( ManLibraryChecker.isSuppressVersionCheck() );
@@ -201,6 +252,21 @@ public class ManConfigurable implements Configurable
       return _experimentalFeatures;
     }
 
+    JCheckBox getGeneratedSourceCache()
+    {
+      return _generatedSourceCache;
+    }
+
+    JCheckBox getWarmUp()
+    {
+      return _warmUp;
+    }
+
+    JSpinner getWarmUpConcurrency()
+    {
+      return _warmUpConcurrency;
+    }
+
     JCheckBox getSuppressManifoldVersionCheck()
     {
       return _suppressManifoldVersionCheck;
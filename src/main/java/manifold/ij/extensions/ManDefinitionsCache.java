@@ -0,0 +1,186 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import manifold.preprocessor.definitions.Definitions;
+
+/**
+ * For preprocessor. The lexer restarts often (highlighting, indexing, stub building), this cache saves each restart from
+ * scanning source roots to locate the file being lexed and from rebuilding its {@link ManDefinitions}, which reloads
+ * build.properties files and environment definitions.
+ * <p/>
+ * Definitions are shared per directory and are reused while the build.properties files above the directory, the
+ * project roots and the build variant (see {@link #invalidate()}) are unchanged. Callers must not modify shared
+ * definitions, files having local {@code #define} or {@code #undef} directives need their own.
+ */
+public class ManDefinitionsCache
+{
+  private static final int MAX_DEFINITIONS = 256;
+  private static final int MAX_FILES = 10_000;
+
+  private static final AtomicLong GENERATION = new AtomicLong();
+  private static final Map<DirKey, CachedDefinitions> DEFINITIONS = new LinkedHashMap<>( 16, 0.75f, true )
+  {
+    @Override
+    protected boolean removeEldestEntry( Map.Entry<DirKey, CachedDefinitions> eldest )
+    {
+      return size() > MAX_DEFINITIONS;
+    }
+  };
+  private static final Map<String, FileLocation> FILES_BY_FQN = new ConcurrentHashMap<>();
+
+  /**
+   * Drop all cached definitions, e.g., after a build variant change
+   */
+  public static void invalidate()
+  {
+    GENERATION.incrementAndGet();
+  }
+
+  /**
+   * @return Shared definitions for {@code file}, callers must not define or undefine symbols in them
+   */
+  static ManDefinitions getDefinitions( Project project, VirtualFile file )
+  {
+    VirtualFile dir = file == null ? null : file.isDirectory() ? file : file.getParent();
+    if( project == null || dir == null )
+    {
+      return new ManDefinitions( project, file );
+    }
+
+    DirKey key = new DirKey( project, dir );
+    long[] stamp = makeStamp( project, dir );
+    synchronized( DEFINITIONS )
+    {
+      CachedDefinitions cached = DEFINITIONS.get( key );
+      if( cached != null && Arrays.equals( cached.stamp(), stamp ) )
+      {
+        return cached.definitions();
+      }
+    }
+
+    ManDefinitions definitions = new ManDefinitions( project, file );
+    synchronized( DEFINITIONS )
+    {
+      DEFINITIONS.keySet().removeIf( k -> k.project().isDisposed() );
+      DEFINITIONS.put( key, new CachedDefinitions( stamp, definitions ) );
+    }
+    return definitions;
+  }
+
+  /**
+   * The stamp changes if a build.properties file is added, removed, or changed in {@code dir} or any of its
+   * ancestors, or if project roots change (module dependencies, language level, etc.)
+   */
+  private static long[] makeStamp( Project project, VirtualFile dir )
+  {
+    int depth = 0;
+    for( VirtualFile csr = dir; csr != null; csr = csr.getParent() )
+    {
+      depth++;
+    }
+
+    long[] stamp = new long[depth + 2];
+    stamp[0] = GENERATION.get();
+    stamp[1] = ProjectRootManager.getInstance( project ).getModificationCount();
+    int i = 2;
+    for( VirtualFile csr = dir; csr != null; csr = csr.getParent() )
+    {
+      VirtualFile buildProperties = csr.findChild( Definitions.BUILD_PROPERTIES );
+      stamp[i++] = buildProperties == null ? -1 : buildProperties.getModificationStamp();
+    }
+    return stamp;
+  }
+
+  /**
+   * Find the source file corresponding with {@code fqn} among the source roots of open projects.
+   *
+   * @return The location of the file, or null if there is no such file
+   */
+  static FileLocation findFile( String fqn )
+  {
+    long structureStamp = VirtualFileManager.getInstance().getStructureModificationCount();
+    String relPath = fqn.replace( '.', '/' ) + ".java";
+
+    FileLocation location = FILES_BY_FQN.get( fqn );
+    if( location != null )
+    {
+      if( location.file() == null )
+      {
+        if( location.structureStamp() == structureStamp )
+        {
+          // known miss, no files were added or moved since
+          return null;
+        }
+      }
+      else if( location.file().isValid() && !location.project().isDisposed() &&
+               location.file().getPath().endsWith( relPath ) )
+      {
+        return location;
+      }
+    }
+
+    location = scanSourceRoots( relPath, structureStamp );
+    if( FILES_BY_FQN.size() >= MAX_FILES )
+    {
+      FILES_BY_FQN.clear();
+    }
+    else
+    {
+      FILES_BY_FQN.values().removeIf( l -> l.project() != null && l.project().isDisposed() );
+    }
+    FILES_BY_FQN.put( fqn, location );
+    return location.file() == null ? null : location;
+  }
+
+  private static FileLocation scanSourceRoots( String relPath, long structureStamp )
+  {
+    for( Project project : ProjectManager.getInstance().getOpenProjects() )
+    {
+      for( VirtualFile root : ProjectRootManager.getInstance( project ).getContentSourceRoots() )
+      {
+        VirtualFile file = root.findFileByRelativePath( relPath );
+        if( file != null )
+        {
+          return new FileLocation( project, file, structureStamp );
+        }
+      }
+    }
+    return new FileLocation( null, null, structureStamp );
+  }
+
+  record FileLocation( Project project, VirtualFile file, long structureStamp ) {}
+
+  private record DirKey( Project project, VirtualFile dir ) {}
+
+  private record CachedDefinitions( long[] stamp, ManDefinitions definitions ) {}
+}
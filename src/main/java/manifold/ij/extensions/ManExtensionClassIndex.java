@@ -0,0 +1,171 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.util.PsiUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import manifold.api.fs.IFile;
+import manifold.api.host.AbstractTypeSystemListener;
+import manifold.api.host.RefreshRequest;
+import manifold.api.type.ITypeManifold;
+import manifold.ext.IExtensionClassProducer;
+import manifold.ij.core.ManModule;
+import manifold.ij.core.ManProject;
+import manifold.ij.fs.IjFile;
+
+import static manifold.api.type.ContributorKind.Supplemental;
+
+/**
+ * Project-level index of extended type FQN -> the extension classes contributing to it, from all modules. Saves
+ * {@link ManAugmentProvider} from asking every supplemental type manifold of every module about the extended type each
+ * time it recomputes augments.
+ * <p/>
+ * An entry is dropped when an extension class on the extended type changes (see {@link ManAugmentProvider}'s PSI
+ * listener) or when a refresh request names the extended type, which covers extension class files created, deleted
+ * or moved, and resources of extension class producers.
+ */
+public class ManExtensionClassIndex extends AbstractTypeSystemListener
+{
+  private final ConcurrentSkipListMap<String, List<Contribution>> _contributionsByFqn;
+  private final AtomicLong _stamp;
+
+  ManExtensionClassIndex( Project project )
+  {
+    _contributionsByFqn = new ConcurrentSkipListMap<>();
+    _stamp = new AtomicLong();
+    ManProject.manProjectFrom( project ).getFileModificationManager().getManRefresher()
+      .addTypeSystemListenerAsWeakRef( this );
+  }
+
+  /**
+   * @param fqn The name of the extended class, may be an inner class
+   * @param psiClass The extended class
+   * @return The extension classes contributing to {@code fqn} in module and type manifold order
+   */
+  List<Contribution> getContributions( String fqn, PsiClass psiClass )
+  {
+    List<Contribution> contributions = _contributionsByFqn.get( fqn );
+    if( contributions != null )
+    {
+      return contributions;
+    }
+
+    long stamp = _stamp.get();
+    contributions = findContributions( fqn, psiClass );
+    if( stamp == _stamp.get() )
+    {
+      _contributionsByFqn.put( fqn, contributions );
+    }
+    return contributions;
+  }
+
+  private static List<Contribution> findContributions( String fqn, PsiClass psiClass )
+  {
+    List<Contribution> contributions = new ArrayList<>();
+    ManProject manProject = ManProject.manProjectFrom( psiClass.getProject() );
+    PsiClass topLevelClass = PsiUtil.getTopLevelClass( psiClass );
+    for( ManModule manModule : manProject.getModules().values() )
+    {
+      for( ITypeManifold tm : manModule.getTypeManifolds() )
+      {
+        if( tm.getContributorKind() == Supplemental )
+        {
+          if( topLevelClass != null && (tm.isType( topLevelClass.getQualifiedName() ) || "__Array__".equals( psiClass.getName() )) )
+          {
+            List<IFile> files = tm.findFilesForType( fqn );
+            if( files.isEmpty() )
+            {
+              continue;
+            }
+            String innerSuffix = fqn.substring( ManifoldPsiClassCache.findTopLevelFqn( tm, fqn ).length() );
+            for( IFile file : files )
+            {
+              VirtualFile vFile = ((IjFile)file.getPhysicalFile()).getVirtualFile();
+              contributions.add( new ExtensionFile( manModule, vFile, innerSuffix ) );
+            }
+          }
+        }
+        else if( tm instanceof IExtensionClassProducer )
+        {
+          IExtensionClassProducer ecp = (IExtensionClassProducer)tm;
+          if( ecp.isExtendedType( fqn ) )
+          {
+            for( String extension : ecp.getExtensionClasses( fqn ) )
+            {
+              contributions.add( new ProducedExtension( manModule, extension ) );
+            }
+          }
+        }
+      }
+    }
+    return contributions.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList( contributions );
+  }
+
+  /**
+   * Drop the entries for {@code extendedFqn} and the inner classes nested in it.
+   */
+  void invalidate( String extendedFqn )
+  {
+    _stamp.incrementAndGet();
+    _contributionsByFqn.remove( extendedFqn );
+    // '/' follows '.', the submap covers all names nested in extendedFqn
+    _contributionsByFqn.subMap( extendedFqn + '.', extendedFqn + '/' ).clear();
+  }
+
+  @Override
+  public void refreshedTypes( RefreshRequest request )
+  {
+    for( String type : request.types )
+    {
+      invalidate( type );
+    }
+  }
+
+  @Override
+  public void refreshed()
+  {
+    _stamp.incrementAndGet();
+    _contributionsByFqn.clear();
+  }
+
+  sealed interface Contribution permits ExtensionFile, ProducedExtension
+  {
+    ManModule module();
+  }
+
+  /**
+   * An extension class file, {@code innerSuffix} is non-empty if the extended type is an inner class
+   */
+  record ExtensionFile( ManModule module, VirtualFile file, String innerSuffix ) implements Contribution { }
+
+  /**
+   * An extension class generated by an {@link IExtensionClassProducer}
+   */
+  record ProducedExtension( ManModule module, String extensionFqn ) implements Contribution { }
+}
@@ -0,0 +1,520 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+
+import manifold.api.fs.IFile;
+import manifold.api.fs.IFileFragment;
+import manifold.api.type.ITypeManifold;
+import manifold.ij.core.ManProject;
+import manifold.ij.fs.IjFile;
+import manifold.util.concurrent.ConcurrentHashSet;
+import manifold.util.concurrent.ConcurrentWeakHashMap;
+import manifold.util.concurrent.LocklessLazyVar;
+
+/**
+ * A persistent cache of the Java source type manifolds generate for top-level resource types, so a warm start of the
+ * IDE can skip {@link ITypeManifold#contribute} for types whose resource files have not changed. An entry is keyed on
+ * the top-level name, the contributing type manifolds with their versions, and the content hashes of the resource files
+ * backing the type. It stores the generated source together with the issues reported while generating it, and the
+ * content hashes of the other files the type manifolds read while generating it, e.g., a GraphQL schema or a JSON
+ * {@code $ref}, which must still match for the entry to be used. Since a type manifold may read such a file once, to
+ * build a model it shares between types, the other files a type manifold has read this session count for all the types
+ * it generates afterward.
+ * <p/>
+ * Entries live in the IDE system directory, one file per entry, each with a trailing checksum that is verified on load.
+ * The total size is bounded, least recently used entries are evicted first.
+ */
+public class ManGeneratedSourceCache
+{
+  private static final Logger LOG = Logger.getInstance( ManGeneratedSourceCache.class );
+
+  private static final String MANIFOLD_GENERATED_SOURCE_CACHE_ENABLED = "manifold.generated.source.cache.enabled";
+  private static final LocklessLazyVar<boolean[]> GENERATED_SOURCE_CACHE_ENABLED = LocklessLazyVar.make( () ->
+    new boolean[] {PropertiesComponent.getInstance().getBoolean( MANIFOLD_GENERATED_SOURCE_CACHE_ENABLED, true )} );
+
+  private static final int MAGIC = 0x4D414E47; // "MANG"
+  private static final int FORMAT_VERSION = 2;
+  private static final String ENTRY_EXT = ".gen";
+  private static final long MAX_CACHE_BYTES = Long.getLong( "manifold.generated.source.cache.max.mb", 256 ) * 1024 * 1024;
+
+  private final ManProject _project;
+  private final Path _dir;
+  private final ExecutorService _writer;
+  private final LocklessLazyVar<AtomicLong> _totalBytes;
+  // files a type manifold read while generating types, other than the files backing them
+  private final Map<ITypeManifold, Set<IjFile>> _sharedReads;
+
+  public ManGeneratedSourceCache( ManProject project )
+  {
+    _project = project;
+    _dir = Paths.get( PathManager.getSystemPath(), "manifold", "generated", project.getNativeProject().getLocationHash() );
+    _writer = AppExecutorUtil.createBoundedApplicationPoolExecutor( "Manifold Generated Source Cache", 1 );
+    _totalBytes = LocklessLazyVar.make( () -> new AtomicLong( computeTotalBytes() ) );
+    _sharedReads = new ConcurrentWeakHashMap<>();
+  }
+
+  static boolean isEnabled()
+  {
+    return GENERATED_SOURCE_CACHE_ENABLED.get()[0];
+  }
+  static void setEnabled( boolean enabled )
+  {
+    GENERATED_SOURCE_CACHE_ENABLED.get()[0] = enabled;
+    PropertiesComponent.getInstance().setValue( MANIFOLD_GENERATED_SOURCE_CACHE_ENABLED, enabled, true );
+  }
+
+  /**
+   * Make the key for a top-level type contributed by {@code tms}, in contribution order.
+   *
+   * @return The key or null if the type can't be cached, for instance if it is backed by a file fragment or a file
+   * that isn't on disk
+   */
+  Key makeKey( String topLevelFqn, Collection<ITypeManifold> tms )
+  {
+    if( !isEnabled() )
+    {
+      return null;
+    }
+
+    StringBuilder key = new StringBuilder( topLevelFqn );
+    for( ITypeManifold tm: tms )
+    {
+      List<IFile> files = tm.findFilesForType( topLevelFqn );
+      if( files.isEmpty() )
+      {
+        return null;
+      }
+
+      key.append( '|' ).append( tm.getModule().getName() )
+        .append( ':' ).append( tm.getClass().getName() )
+        .append( ':' ).append( getVersion( tm ) );
+      for( IFile file: files )
+      {
+        if( file instanceof IFileFragment || !(file instanceof IjFile) || ((IjFile)file).getVirtualFile() == null )
+        {
+          // fragments are embedded in other files, their content is not worth tracking here
+          return null;
+        }
+        String hash = hashContent( file );
+        if( hash == null )
+        {
+          return null;
+        }
+        key.append( ':' ).append( file.getPath().getPathString() ).append( '=' ).append( hash );
+      }
+    }
+    String text = key.toString();
+    return new Key( text, hash( text.getBytes( StandardCharsets.UTF_8 ) ) );
+  }
+
+  /**
+   * @return The cached source and issues for {@code key} or null if there is no valid entry
+   */
+  Entry load( Key key )
+  {
+    Path file = _dir.resolve( key.fileName() );
+    if( !Files.isRegularFile( file ) )
+    {
+      return null;
+    }
+
+    try
+    {
+      byte[] bytes = Files.readAllBytes( file );
+      Entry entry = read( key, bytes );
+      if( entry == null )
+      {
+        // corrupt, a hash collision, or a file read while generating the type changed, either way the entry is useless
+        delete( file );
+        return null;
+      }
+      Files.setLastModifiedTime( file, FileTime.fromMillis( System.currentTimeMillis() ) );
+      return entry;
+    }
+    catch( IOException e )
+    {
+      LOG.debug( "Failed to read generated source cache entry: " + file, e );
+      return null;
+    }
+  }
+
+  /**
+   * Write the entry for {@code key}, made from {@code tms}, in the background.
+   *
+   * @param reads The files read while generating the type, see {@link IjFile#recordReads}
+   */
+  void store( Key key, String topLevelFqn, Collection<ITypeManifold> tms, String source,
+              DiagnosticCollector<JavaFileObject> issues, Set<IjFile> reads )
+  {
+    Set<IFile> ownFiles = new HashSet<>();
+    for( ITypeManifold tm: tms )
+    {
+      // already hashed in the key
+      ownFiles.addAll( tm.findFilesForType( topLevelFqn ) );
+    }
+    Set<IjFile> otherFiles = new HashSet<>();
+    for( IjFile file: reads )
+    {
+      if( !ownFiles.contains( file ) && !isArchive( file ) )
+      {
+        // archives are libraries, a change to these replaces the type manifolds' module classpath
+        otherFiles.add( file );
+      }
+    }
+    for( ITypeManifold tm: tms )
+    {
+      Set<IjFile> shared = _sharedReads.computeIfAbsent( tm, k -> new ConcurrentHashSet<>() );
+      shared.addAll( otherFiles );
+      otherFiles.addAll( shared );
+    }
+
+    // hash the files now, a change after the write would otherwise go unnoticed on the next start
+    Map<String, String> dependencies = new TreeMap<>();
+    for( IjFile file: otherFiles )
+    {
+      String hash = hashContent( file );
+      if( hash == null )
+      {
+        return;
+      }
+      dependencies.put( file.getPath().getPathString(), hash );
+    }
+
+    List<Diagnostic<? extends JavaFileObject>> diagnostics = new ArrayList<>( issues.getDiagnostics() );
+    _writer.execute( () -> {
+      try
+      {
+        write( key, source, diagnostics, dependencies );
+      }
+      catch( IOException e )
+      {
+        LOG.debug( "Failed to write generated source cache entry: " + key.fileName(), e );
+      }
+    } );
+  }
+
+  private Entry read( Key key, byte[] bytes ) throws IOException
+  {
+    if( bytes.length < Long.BYTES )
+    {
+      return null;
+    }
+    CRC32 crc = new CRC32();
+    crc.update( bytes, 0, bytes.length - Long.BYTES );
+    DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes ) );
+    in.skipBytes( bytes.length - Long.BYTES );
+    if( in.readLong() != crc.getValue() )
+    {
+      return null;
+    }
+
+    in = new DataInputStream( new ByteArrayInputStream( bytes, 0, bytes.length - Long.BYTES ) );
+    if( in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !key.text().equals( readString( in ) ) )
+    {
+      return null;
+    }
+    int dependencyCount = in.readInt();
+    for( int i = 0; i < dependencyCount; i++ )
+    {
+      String path = readString( in );
+      String hash = readString( in );
+      IFile file = _project.getFileSystem().getIFile( new File( path ) );
+      if( !file.exists() || !hash.equals( hashContent( file ) ) )
+      {
+        return null;
+      }
+    }
+    String source = readString( in );
+    DiagnosticCollector<JavaFileObject> issues = new DiagnosticCollector<>();
+    int count = in.readInt();
+    for( int i = 0; i < count; i++ )
+    {
+      Diagnostic.Kind kind = Diagnostic.Kind.valueOf( in.readUTF() );
+      long position = in.readLong();
+      long start = in.readLong();
+      long end = in.readLong();
+      long line = in.readLong();
+      long column = in.readLong();
+      String code = in.readBoolean() ? readString( in ) : null;
+      String message = readString( in );
+      issues.report( new CachedDiagnostic( kind, position, start, end, line, column, code, message ) );
+    }
+    return new Entry( source, issues );
+  }
+
+  private void write( Key key, String source, List<Diagnostic<? extends JavaFileObject>> diagnostics,
+                      Map<String, String> dependencies ) throws IOException
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream( source.length() + 256 );
+    DataOutputStream out = new DataOutputStream( bytes );
+    out.writeInt( MAGIC );
+    out.writeInt( FORMAT_VERSION );
+    writeString( out, key.text() );
+    out.writeInt( dependencies.size() );
+    for( Map.Entry<String, String> dependency: dependencies.entrySet() )
+    {
+      writeString( out, dependency.getKey() );
+      writeString( out, dependency.getValue() );
+    }
+    writeString( out, source );
+    out.writeInt( diagnostics.size() );
+    for( Diagnostic<? extends JavaFileObject> d: diagnostics )
+    {
+      out.writeUTF( d.getKind().name() );
+      out.writeLong( d.getPosition() );
+      out.writeLong( d.getStartPosition() );
+      out.writeLong( d.getEndPosition() );
+      out.writeLong( d.getLineNumber() );
+      out.writeLong( d.getColumnNumber() );
+      out.writeBoolean( d.getCode() != null );
+      if( d.getCode() != null )
+      {
+        writeString( out, d.getCode() );
+      }
+      writeString( out, String.valueOf( d.getMessage( Locale.getDefault() ) ) );
+    }
+    CRC32 crc = new CRC32();
+    crc.update( bytes.toByteArray() );
+    out.writeLong( crc.getValue() );
+    out.flush();
+
+    Files.createDirectories( _dir );
+    Path file = _dir.resolve( key.fileName() );
+    Path tmp = Files.createTempFile( _dir, key.fileName(), ".tmp" );
+    Files.write( tmp, bytes.toByteArray() );
+    long priorSize = Files.isRegularFile( file ) ? Files.size( file ) : 0;
+    Files.move( tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+
+    if( _totalBytes.get().addAndGet( bytes.size() - priorSize ) > MAX_CACHE_BYTES )
+    {
+      evict();
+    }
+  }
+
+  /**
+   * Delete least recently used entries until the cache is at three quarters of its limit.
+   */
+  private void evict() throws IOException
+  {
+    List<Path> entries;
+    try( Stream<Path> stream = Files.list( _dir ) )
+    {
+      entries = new ArrayList<>( stream.filter( p -> p.toString().endsWith( ENTRY_EXT ) ).toList() );
+    }
+    Map<Path, Long> lastUsed = new HashMap<>();
+    for( Path entry: entries )
+    {
+      lastUsed.put( entry, Files.getLastModifiedTime( entry ).toMillis() );
+    }
+    entries.sort( Comparator.comparing( lastUsed::get ) );
+
+    AtomicLong total = _totalBytes.get();
+    for( Path entry: entries )
+    {
+      if( total.get() <= MAX_CACHE_BYTES * 3 / 4 )
+      {
+        break;
+      }
+      total.addAndGet( -delete( entry ) );
+    }
+  }
+
+  private long computeTotalBytes()
+  {
+    if( !Files.isDirectory( _dir ) )
+    {
+      return 0;
+    }
+    try( Stream<Path> stream = Files.list( _dir ) )
+    {
+      return stream.filter( p -> p.toString().endsWith( ENTRY_EXT ) ).mapToLong( p -> p.toFile().length() ).sum();
+    }
+    catch( IOException e )
+    {
+      return 0;
+    }
+  }
+
+  private long delete( Path file )
+  {
+    try
+    {
+      long size = Files.size( file );
+      Files.deleteIfExists( file );
+      return size;
+    }
+    catch( IOException e )
+    {
+      return 0;
+    }
+  }
+
+  private static String getVersion( ITypeManifold tm )
+  {
+    Package pkg = tm.getClass().getPackage();
+    String version = pkg == null ? null : pkg.getImplementationVersion();
+    CodeSource codeSource = tm.getClass().getProtectionDomain().getCodeSource();
+    URL location = codeSource == null ? null : codeSource.getLocation();
+    if( location != null && "file".equals( location.getProtocol() ) )
+    {
+      // snapshot jars keep their version across builds, include the timestamp of the jar
+      File jar = new File( location.getPath() );
+      return version + '@' + jar.getName() + '@' + jar.lastModified();
+    }
+    return String.valueOf( version );
+  }
+
+  private static boolean isArchive( IFile file )
+  {
+    String ext = file.getExtension();
+    return "jar".equalsIgnoreCase( ext ) || "zip".equalsIgnoreCase( ext ) || "class".equalsIgnoreCase( ext );
+  }
+
+  private static String hashContent( IFile file )
+  {
+    try( InputStream in = file.openInputStream() )
+    {
+      return hash( in.readAllBytes() );
+    }
+    catch( IOException e )
+    {
+      return null;
+    }
+  }
+
+  private static String hash( byte[] bytes )
+  {
+    try
+    {
+      return HexFormat.of().formatHex( MessageDigest.getInstance( "SHA-256" ).digest( bytes ) );
+    }
+    catch( NoSuchAlgorithmException e )
+    {
+      throw new RuntimeException( e );
+    }
+  }
+
+  private static void writeString( DataOutputStream out, String value ) throws IOException
+  {
+    byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+    out.writeInt( bytes.length );
+    out.write( bytes );
+  }
+
+  private static String readString( DataInputStream in ) throws IOException
+  {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully( bytes );
+    return new String( bytes, StandardCharsets.UTF_8 );
+  }
+
+  record Key( String text, String hash )
+  {
+    String fileName()
+    {
+      return hash + ENTRY_EXT;
+    }
+  }
+
+  record Entry( String source, DiagnosticCollector<JavaFileObject> issues ) { }
+
+  /**
+   * An issue restored from the cache. The source object is not preserved, annotators only need positions and messages.
+   */
+  private record CachedDiagnostic( Diagnostic.Kind kind, long position, long start, long end, long line, long column,
+                                   String code, String message ) implements Diagnostic<JavaFileObject>
+  {
+    @Override
+    public Kind getKind()
+    {
+      return kind;
+    }
+
+    @Override
+    public JavaFileObject getSource()
+    {
+      return null;
+    }
+
+    @Override
+    public long getPosition()
+    {
+      return position;
+    }
+
+    @Override
+    public long getStartPosition()
+    {
+      return start;
+    }
+
+    @Override
+    public long getEndPosition()
+    {
+      return end;
+    }
+
+    @Override
+    public long getLineNumber()
+    {
+      return line;
+    }
+
+    @Override
+    public long getColumnNumber()
+    {
+      return column;
+    }
+
+    @Override
+    public String getCode()
+    {
+      return code;
+    }
+
+    @Override
+    public String getMessage( Locale locale )
+    {
+      return message;
+    }
+  }
+}
@@ -33,12 +33,18 @@ import com.intellij.psi.impl.source.tree.java.*;
 import com.intellij.psi.infos.MethodCandidateInfo;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.util.PsiUtil;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -74,6 +80,34 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
   private static final Set<String> PROPERTY_ANNO_FQNS =
     Set.of( val.class.getTypeName(), var.class.getTypeName(), set.class.getTypeName(), get.class.getTypeName() );
 
+  private static final int MAX_CACHED_DESCRIPTIONS = 10_000;
+
+  private final List<Rule> _rules;
+  private final Map<String, Rule[]> _rulesByDescription;
+
+  public ManHighlightInfoFilter()
+  {
+    _rules = makeRules();
+    _rulesByDescription = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * @return Hit and miss counts of the filter rules, for profiling
+   */
+  public static List<RuleStats> getRuleStats()
+  {
+    ManHighlightInfoFilter filter = HighlightInfoFilter.EXTENSION_POINT_NAME.findExtension( ManHighlightInfoFilter.class );
+    List<RuleStats> stats = new ArrayList<>();
+    if( filter != null )
+    {
+      for( Rule rule : filter._rules )
+      {
+        stats.add( new RuleStats( rule._name, rule._hits.get(), rule._misses.get() ) );
+      }
+    }
+    return stats;
+  }
+
   /**
    * Override to filter errors related to type incompatibilities arising from a
    * manifold extension adding an interface to an existing classpath class (as opposed
@@ -94,210 +128,340 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
       return true;
     }
 
-    if( hi.getDescription() == null )
+    String description = hi.getDescription();
+    if( description == null )
     {
       return true;
     }
 
-    //
-    // Handle Warnings OR Errors...
-    //
-
-    if( filterComparedUsingEquals( hi, file ) )
-    {
-      return false;
-    }
-
-    if( filterCanBeReplacedWith( hi, file ) )
-    {
-      return false;
-    }
-
-    if( filterCastingStructuralInterfaceWarning( hi, file ) )
-    {
-      return false;
-    }
-
-    if( filterArrayIndexIsOutOfBounds( hi, file ) )
-    {
-      return false;
-    }
-
-    if( filterTemplateUnnecessarySemicolon( hi, file ) )
+    Rule[] rules = getRules( description );
+    if( rules.length == 0 )
     {
-      return false;
-    }
-
-    if( filterCallToToStringOnArray( hi, file ) )
-    {
-      return false;
-    }
-
-    if( filterUpdatedButNeverQueried( hi, file ) )
-    {
-      return false;
+      return true;
     }
 
-    PsiElement firstElem = file.findElementAt( hi.getStartOffset() );
-
-    if( filterFieldIsNeverUsed( hi, firstElem ) )
+    Context ctx = new Context( hi, file );
+    for( Rule rule : rules )
     {
-      return false;
+      if( ctx.isInScope( rule._scope ) && rule.filter( hi, ctx ) )
+      {
+        return false;
+      }
     }
+    return true;
+  }
 
-    if( filterNullMarkedFieldInitializationWarning( hi, firstElem ) )
+  /**
+   * @return The rules that can apply to a highlight having {@code description}, in order
+   */
+  private Rule[] getRules( String description )
+  {
+    Rule[] rules = _rulesByDescription.get( description );
+    if( rules == null )
     {
-      return false;
+      rules = _rules.stream()
+        .filter( rule -> rule._appliesTo == null || rule._appliesTo.test( description ) )
+        .toArray( Rule[]::new );
+      if( _rulesByDescription.size() >= MAX_CACHED_DESCRIPTIONS )
+      {
+        // descriptions embed names, don't let them accumulate
+        _rulesByDescription.clear();
+      }
+      _rulesByDescription.put( description, rules );
     }
+    return rules;
+  }
 
-    if( filterSynchronizationOnPropertyFieldWarning( hi, firstElem ) )
-    {
-      return false;
-    }
+  private List<Rule> makeRules()
+  {
+    List<Rule> rules = new ArrayList<>();
 
-    if( hi.getSeverity() != HighlightSeverity.ERROR )
-    {
-      return true;
-    }
     //
-    // Handle only Errors...
+    // Warnings OR Errors...
     //
 
-    if( filterUnhandledCheckedExceptions( hi, file ) )
-    {
-      return false;
-    }
+    rules.add( new Rule( "ComparedUsingEquals", Scope.ANY,
+      containing( "compared using '=='", "compared using '!='", "使用 '==' 而不是", "使用 '!=' 而不是" ),
+      (hi, ctx) -> filterComparedUsingEquals( hi, ctx.getFirstElem() ) ) );
+    rules.add( new Rule( "CanBeReplacedWith", Scope.ANY,
+      containing( "can be replaced with", "可被替换为" ),
+      (hi, ctx) -> filterCanBeReplacedWith( hi, ctx.getFirstElem() ) ) );
+    rules.add( new Rule( "CastingStructuralInterface", Scope.ANY,
+      desc -> startsWithAny( desc, "Casting '", "将 '" ) &&
+        (desc.endsWith( "will produce 'ClassCastException' for any non-null value" ) ||
+         desc.endsWith( "会为任意非 null 值生成 'ClassCastException'" )),
+      (hi, ctx) -> filterCastingStructuralInterfaceWarning( hi, ctx.getFirstElem() ) ) );
+    rules.add( new Rule( "ArrayIndexIsOutOfBounds", Scope.ANY,
+      startingWith( "Array index is out of bounds", "数组索引超出范围" ),
+      (hi, ctx) -> filterArrayIndexIsOutOfBounds( hi, ctx.getFirstElem() ) ) );
+    rules.add( new Rule( "TemplateUnnecessarySemicolon", Scope.ANY,
+      containing( "Unnecessary semicolon", "不必要的分号" ),
+      (hi, ctx) -> filterTemplateUnnecessarySemicolon( hi, ctx.getFile() ) ) );
+    rules.add( new Rule( "CallToToStringOnArray", Scope.ANY,
+      containing( "Call to 'toString()' on array" ),
+      (hi, ctx) -> filterCallToToStringOnArray( hi, ctx.getFile() ) ) );
+    rules.add( new Rule( "UpdatedButNeverQueried", Scope.ANY,
+      desc -> containsAny( desc, "updated, but never queried", "更新，但从未被查询" ) ||
+        desc.contains( "changed" ) && desc.contains( "is never used" ) ||
+        desc.startsWith( "The value " ) && desc.endsWith( "is never used" ),
+      (hi, ctx) -> filterUpdatedButNeverQueried( hi, ctx.getFirstElem() ) ) );
+    rules.add( new Rule( "FieldIsNeverUsed", Scope.ANY,
+      desc -> desc.startsWith( "Field '" ) && desc.endsWith( "' is never used" ),
+      (hi, ctx) -> filterFieldIsNeverUsed( hi, ctx.getFirstElem() ) ) );
+    rules.add( new Rule( "NullMarkedFieldInitialization", Scope.ANY,
+      desc -> desc.equals( "@NullMarked fields must be initialized" ),
+      (hi, ctx) -> filterNullMarkedFieldInitializationWarning( hi, ctx.getFirstElem() ) ) );
+    rules.add( new Rule( "SynchronizationOnPropertyField", Scope.ANY,
+      startingWith( "Synchronization on a non-final field '" ),
+      (hi, ctx) -> filterSynchronizationOnPropertyFieldWarning( hi, ctx.getFirstElem() ) ) );
 
-    if( firstElem == null )
-    {
-      return true;
-    }
-
-    Language language = firstElem.getLanguage();
-    if( !language.is( JavaLanguage.INSTANCE ) && !language.isKindOf( JavaLanguage.INSTANCE ) )
-    {
-      return true;
-    }
-
-    if( filterAmbiguousMethods( hi, firstElem ) )
-    {
-      return false;
-    }
+    //
+    // Errors only...
+    //
 
-    PsiElement elem = firstElem.getParent();
-    if( elem == null )
-    {
-      return true;
-    }
+    rules.add( new Rule( "UnhandledCheckedExceptions", Scope.ERROR,
+      containing( "Unhandled exception", "未处理的异常", "未处理 异常" ),
+      (hi, ctx) -> filterUnhandledCheckedExceptions( hi, ctx.getFile() ) ) );
+    rules.add( new Rule( "AmbiguousMethods", Scope.JAVA_ERROR,
+      startingWith( "Ambiguous method call", "方法调用不明确" ),
+      (hi, ctx) -> filterAmbiguousMethods( hi, ctx.getFirstElem() ) ) );
+    rules.add( new Rule( "IllegalEscapedCharDollars", Scope.JAVA_ERROR,
+      containing( "Illegal escape character", "字符串文字中的非法转义字符" ),
+      (hi, ctx) -> filterIllegalEscapedCharDollars( hi, ctx.getFirstElem(), ctx.getElem() ) ) );
+    rules.add( new Rule( "CannotAssignToFinalIfJailbreak", Scope.JAVA_ERROR,
+      startingWith( "Cannot assign a value to final variable", "无法将值赋给 final 变量" ),
+      (hi, ctx) -> filterCannotAssignToFinalIfJailbreak( hi, ctx.getFirstElem() ) ) );
+    rules.add( new Rule( "UnclosedComment", Scope.JAVA_ERROR, null,
+      (hi, ctx) -> filterUnclosedComment( hi, ctx.getFirstElem() ) ) );
+    rules.add( new Rule( "OperatorCannotBeApplied", Scope.JAVA_ERROR,
+      desc -> desc.contains( "Operator" ) && desc.contains( "cannot be applied to" ) ||
+        desc.contains( "运算符" ) && desc.contains( "不能应用于" ),
+      (hi, ctx) -> filterOperatorCannotBeApplied( hi, ctx.getElem(), ctx.getFirstElem() ) ) );
+    Predicate<String> incDecCannotBeApplied = containing(
+      "Operator '-' cannot be applied to", "Operator '--' cannot be applied to", "Operator '++' cannot be applied to",
+      "运算符 '-' 不能应用于", "运算符 '--' 不能应用于", "运算符 '++' 不能应用于" );
+    rules.add( new Rule( "PrefixExprCannotBeApplied", Scope.JAVA_ERROR, incDecCannotBeApplied,
+      (hi, ctx) -> filterPrefixExprCannotBeApplied( hi, ctx.getElem(), ctx.getFirstElem() ) ) );
+    rules.add( new Rule( "PostfixExprCannotBeApplied", Scope.JAVA_ERROR, incDecCannotBeApplied,
+      (hi, ctx) -> filterPostfixExprCannotBeApplied( hi, ctx.getElem(), ctx.getFirstElem() ) ) );
+    Predicate<String> incompatibleTypes = containing( "Incompatible types", "不兼容的类型" );
+    rules.add( new Rule( "IncompatibleTypesWithCompoundAssignmentOperatorOverload", Scope.JAVA_ERROR, incompatibleTypes,
+      (hi, ctx) -> filterIncompatibleTypesWithCompoundAssignmentOperatorOverload( hi, ctx.getElem(), ctx.getFirstElem() ) ) );
+    Predicate<String> cannotBeAppliedTo = containing( "' cannot be applied to ", "' 不能应用于 " );
+    rules.add( new Rule( "OperatorCannotBeAppliedToWithCompoundAssignmentOperatorOverload", Scope.JAVA_ERROR, cannotBeAppliedTo,
+      (hi, ctx) -> filterOperatorCannotBeAppliedToWithCompoundAssignmentOperatorOverload( hi, ctx.getElem(), ctx.getFirstElem() ) ) );
+    rules.add( new Rule( "OperatorCannotBeAppliedToWithBinaryOperatorOverload", Scope.JAVA_ERROR, cannotBeAppliedTo,
+      (hi, ctx) -> filterOperatorCannotBeAppliedToWithBinaryOperatorOverload( hi, ctx.getElem() ) ) );
+    rules.add( new Rule( "NotInitializedOnChainedAssignment", Scope.JAVA_ERROR,
+      desc -> containsAny( desc, " might not have been initialized", "' 不能应用于 " ) ||
+        startsWithAny( desc, "Variable expected", "应为变量" ),
+      (hi, ctx) -> filterNotInitializedOnChainedAssignment( hi, ctx.getElem() ) ) );
+
+    // indexed operator overloading
+    rules.add( new Rule( "ArrayTypeExpected", Scope.JAVA_ERROR,
+      startingWith( "Array type expected", "应为数组类型" ),
+      (hi, ctx) -> filterArrayTypeExpected( hi, ctx.getElem(), ctx.getFirstElem() ) ) );
+    rules.add( new Rule( "VariableExpected", Scope.JAVA_ERROR,
+      desc -> desc.startsWith( "Variable expected" ) || containsAny( desc, "variable expected on left", "应为变量" ),
+      (hi, ctx) -> filterVariableExpected( hi, ctx.getElem(), ctx.getFirstElem() ) ) );
+    rules.add( new Rule( "IncompatibleTypesWithArrayAccess", Scope.JAVA_ERROR, incompatibleTypes,
+      (hi, ctx) -> filterIncompatibleTypesWithArrayAccess( hi, ctx.getElem(), ctx.getFirstElem() ) ) );
+
+    rules.add( new Rule( "AnyAnnoTypeError", Scope.JAVA_ERROR,
+      desc -> startsWithAny( desc, "Incompatible types", "不兼容的类型" ) &&
+        desc.contains( manifold.rt.api.anno.any.class.getTypeName() ),
+      (hi, ctx) -> filterAnyAnnoTypeError( hi, ctx.getElem(), ctx.getFirstElem() ) ) );
+    rules.add( new Rule( "IncompatibleReturnType", Scope.JAVA_ERROR,
+      containing( "incompatible return type", "返回类型不兼容" ),
+      (hi, ctx) -> filterIncompatibleReturnType( hi, ctx.getElem(), ctx.getFirstElem() ) ) );
+    rules.add( new Rule( "ForeachExpressionErrors", Scope.JAVA_ERROR,
+      containing( "foreach not applicable to type", "oreach 不适用于类型" ),
+      (hi, ctx) -> filterForeachExpressionErrors( hi, ctx.getElem(), ctx.getFirstElem() ) ) );
+    rules.add( new Rule( "InnerClassReferenceError", Scope.JAVA_ERROR,
+      desc -> desc.startsWith( "Non-static field" ) && desc.contains( "cannot be referenced from a static context" ) ||
+        containsAny( desc, "Static method may be invoked on containing interface class only", "Expected class or package" ),
+      (hi, ctx) -> filterInnerClassReferenceError( hi, ctx.getElem(), ctx.getFirstElem() ) ) );
+    rules.add( new Rule( "UsageOfApiNewerThan", Scope.JAVA_ERROR,
+      startingWith( "Usage of API documented as" ),
+      (hi, ctx) -> filterUsageOfApiNewerThanError( hi, ctx.getElem(), ctx.getFirstElem() ) ) );
+    rules.add( new Rule( "ParamsClassErrors", Scope.JAVA_ERROR, null,
+      (hi, ctx) -> filterParamsClassErrors( hi, ctx.getElem(), ctx.getFirstElem() ) ) );
+    rules.add( new Rule( "FieldIsNotInitializedInInterface", Scope.JAVA_ERROR,
+      desc -> desc.startsWith( "Field '" ) && desc.endsWith( "' might not have been initialized" ),
+      (hi, ctx) -> filterFieldIsNotInitializedInInterfaceError( hi, ctx.getElem() ) ) );
 
-    if( filterIllegalEscapedCharDollars( hi, firstElem, elem ) )
-    {
-      return false;
-    }
+    //##
+    //## structural interface extensions cannot be added to the psiClass, so for now we suppress "incompatible type
+    //## errors" or similar involving a structural interface extension :(
+    //##
+    rules.add( new Rule( "InterfaceError", Scope.JAVA_ERROR, null,
+      (hi, ctx) -> acceptInterfaceError( hi, ctx.getFirstElem(), ctx.getElem() ) == Boolean.FALSE ) );
 
-    if( filterCannotAssignToFinalIfJailbreak( hi, firstElem ) )
-    {
-      return false;
-    }
+    return rules;
+  }
 
-    if( filterUnclosedComment( hi, firstElem ) )
-    {
-      return false;
-    }
+  private static Predicate<String> containing( String... text )
+  {
+    return desc -> containsAny( desc, text );
+  }
 
-    if( filterOperatorCannotBeApplied( hi, elem, firstElem ) )
-    {
-      return false;
-    }
+  private static Predicate<String> startingWith( String... prefixes )
+  {
+    return desc -> startsWithAny( desc, prefixes );
+  }
 
-    if( filterPrefixExprCannotBeApplied( hi, elem, firstElem ) ||
-        filterPostfixExprCannotBeApplied( hi, elem, firstElem ) )
+  private static boolean containsAny( String desc, String... text )
+  {
+    for( String t : text )
     {
-      return false;
+      if( desc.contains( t ) )
+      {
+        return true;
+      }
     }
+    return false;
+  }
 
-    if( filterIncompatibleTypesWithCompoundAssignmentOperatorOverload( hi, elem, firstElem ) )
+  private static boolean startsWithAny( String desc, String... prefixes )
+  {
+    for( String prefix : prefixes )
     {
-      return false;
+      if( desc.startsWith( prefix ) )
+      {
+        return true;
+      }
     }
+    return false;
+  }
 
-    if( filterOperatorCannotBeAppliedToWithCompoundAssignmentOperatorOverload( hi, elem, firstElem ) )
-    {
-      return false;
-    }
+  /**
+   * Elements are looked up by offset for each highlight, memoize them until PSI changes
+   */
+  private static PsiElement findElementAt( PsiFile file, int offset )
+  {
+    Map<Integer, PsiElement> elements =
+      CachedValuesManager.getProjectPsiDependentCache( file, f -> new ConcurrentHashMap<>() );
+    return elements.computeIfAbsent( offset, file::findElementAt );
+  }
 
-    if( filterOperatorCannotBeAppliedToWithBinaryOperatorOverload( hi, elem ) )
-    {
-      return false;
-    }
+  private enum Scope
+  {
+    /** warnings and errors */
+    ANY,
+    /** errors only */
+    ERROR,
+    /** errors on Java elements having a parent */
+    JAVA_ERROR
+  }
 
-    if( filterNotInitializedOnChainedAssignment( hi, elem ) )
-    {
-      return false;
-    }
+  private interface RuleFilter
+  {
+    /**
+     * @return True if the highlight should be filtered
+     */
+    boolean filter( HighlightInfo hi, Context ctx );
+  }
 
-    // handle indexed operator overloading
-    if( filterArrayTypeExpected( hi, elem, firstElem ) )
-    {
-      return false;
-    }
-    if( filterVariableExpected( hi, elem, firstElem ) )
-    {
-      return false;
-    }
-    if( filterIncompatibleTypesWithArrayAccess( hi, elem, firstElem ) )
-    {
-      return false;
-    }
+  private static class Rule
+  {
+    private final String _name;
+    private final Scope _scope;
+    private final Predicate<String> _appliesTo;
+    private final RuleFilter _filter;
+    private final AtomicLong _hits;
+    private final AtomicLong _misses;
 
-    if( filterAnyAnnoTypeError( hi, elem, firstElem ) )
+    /**
+     * @param appliesTo Tests the description of a highlight to determine if the rule can apply, null if the rule can
+     *                  apply to any highlight in scope. Rules are only called for the descriptions they apply to.
+     */
+    private Rule( String name, Scope scope, Predicate<String> appliesTo, RuleFilter filter )
     {
-      return false;
+      _name = name;
+      _scope = scope;
+      _appliesTo = appliesTo;
+      _filter = filter;
+      _hits = new AtomicLong();
+      _misses = new AtomicLong();
     }
 
-    if( filterIncompatibleReturnType( hi, elem, firstElem ) )
+    private boolean filter( HighlightInfo hi, Context ctx )
     {
-      return false;
+      boolean filtered = _filter.filter( hi, ctx );
+      (filtered ? _hits : _misses).incrementAndGet();
+      return filtered;
     }
+  }
 
-    if( filterForeachExpressionErrors( hi, elem, firstElem ) )
-    {
-      return false;
-    }
+  /**
+   * The highlight being filtered and the elements at its start, looked up once for all rules
+   */
+  private static class Context
+  {
+    private final HighlightInfo _hi;
+    private final PsiFile _file;
+    private boolean _foundFirstElem;
+    private PsiElement _firstElem;
 
-    if( filterInnerClassReferenceError( hi, elem, firstElem ) )
+    private Context( HighlightInfo hi, PsiFile file )
     {
-      return false;
+      _hi = hi;
+      _file = file;
     }
 
-    if( filterUsageOfApiNewerThanError( hi, elem, firstElem ) )
+    private PsiFile getFile()
     {
-      return false;
+      return _file;
     }
 
-    if( filterParamsClassErrors( hi, elem, firstElem ) )
+    private PsiElement getFirstElem()
     {
-      return false;
+      if( !_foundFirstElem )
+      {
+        _firstElem = findElementAt( _file, _hi.getStartOffset() );
+        _foundFirstElem = true;
+      }
+      return _firstElem;
     }
 
-    if( filterFieldIsNotInitializedInInterfaceError( hi, elem ) )
+    private PsiElement getElem()
     {
-      return false;
+      PsiElement firstElem = getFirstElem();
+      return firstElem == null ? null : firstElem.getParent();
     }
 
-    //##
-    //## structural interface extensions cannot be added to the psiClass, so for now we suppress "incompatible type
-    //## errors" or similar involving a structural interface extension :(
-    //##
-    Boolean x = acceptInterfaceError( hi, firstElem, elem );
-    if( x != null )
+    private boolean isInScope( Scope scope )
     {
-      return x;
+      switch( scope )
+      {
+        case ANY:
+          return true;
+        case ERROR:
+          return _hi.getSeverity() == HighlightSeverity.ERROR;
+        case JAVA_ERROR:
+          if( _hi.getSeverity() != HighlightSeverity.ERROR )
+          {
+            return false;
+          }
+          PsiElement firstElem = getFirstElem();
+          if( firstElem == null || firstElem.getParent() == null )
+          {
+            return false;
+          }
+          Language language = firstElem.getLanguage();
+          return language.is( JavaLanguage.INSTANCE ) || language.isKindOf( JavaLanguage.INSTANCE );
+        default:
+          throw new IllegalStateException( "Unhandled scope: " + scope );
+      }
     }
-
-    return true;
   }
 
+  /**
+   * @param hits Number of highlights the rule filtered
+   * @param misses Number of highlights the rule was called for, but did not filter
+   */
+  public record RuleStats( String name, long hits, long misses ) {}
+
   private boolean filterTemplateUnnecessarySemicolon( HighlightInfo hi, PsiFile file )
   {
     String description = hi.getDescription();
@@ -307,74 +471,42 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
   }
 
   // Operator overloading: Filter warning messages like "Number objects are compared using '==', not 'equals()'"
-  private boolean filterComparedUsingEquals( HighlightInfo hi, PsiFile file )
+  private boolean filterComparedUsingEquals( HighlightInfo hi, PsiElement firstElem )
   {
-    if( hi != null )
+    if( firstElem != null )
     {
-      String description = hi.getDescription();
-      if( description != null &&
-        ((description.contains( "compared using '=='" ) ||
-           description.contains( "compared using '!='" )) ||
-         (description.contains( "使用 '==' 而不是" ) ||
-           description.contains( "使用 '!=' 而不是" ))) )
+      PsiElement parent = firstElem.getParent();
+      if( parent instanceof PsiBinaryExpressionImpl )
       {
-        PsiElement firstElem = file.findElementAt( hi.getStartOffset() );
-        if( firstElem != null )
-        {
-          PsiElement parent = firstElem.getParent();
-          if( parent instanceof PsiBinaryExpressionImpl )
-          {
-            PsiType type = ManJavaResolveCache.getTypeForOverloadedBinaryOperator( (PsiBinaryExpression)parent );
-            return type != null;
-          }
-        }
+        PsiType type = ManJavaResolveCache.getTypeForOverloadedBinaryOperator( (PsiBinaryExpression)parent );
+        return type != null;
       }
     }
     return false;
   }
 
   // Filter warning messages like "1 Xxx can be replaced with Xxx" where '1 Xxx' is a binding expression
-  private boolean filterCanBeReplacedWith( HighlightInfo hi, PsiFile file )
+  private boolean filterCanBeReplacedWith( HighlightInfo hi, PsiElement firstElem )
   {
-    if( hi != null )
+    while( !(firstElem instanceof PsiBinaryExpressionImpl)  )
     {
-      String description = hi.getDescription();
-      if( description != null && description.contains( "can be replaced with" ) ||
-          description != null && description.contains( "可被替换为" ) )
+      if( firstElem == null )
       {
-        PsiElement firstElem = file.findElementAt( hi.getStartOffset() );
-        while( !(firstElem instanceof PsiBinaryExpressionImpl)  )
-        {
-          if( firstElem == null )
-          {
-            return false;
-          }
-          firstElem = firstElem.getParent();
-        }
-
-        // a null operator indicates a biding expression
-        PsiElement child = ((PsiBinaryExpressionImpl)firstElem).findChildByRoleAsPsiElement( OPERATION_SIGN );
-        return child == null;
+        return false;
       }
+      firstElem = firstElem.getParent();
     }
-    return false;
+
+    // a null operator indicates a biding expression
+    PsiElement child = ((PsiBinaryExpressionImpl)firstElem).findChildByRoleAsPsiElement( OPERATION_SIGN );
+    return child == null;
   }
 
   // Filter warning messages like "1 Xxx can be replaced with Xxx" where '1 Xxx' is a binding expression
-  private boolean filterCastingStructuralInterfaceWarning( HighlightInfo hi, PsiFile file )
+  private boolean filterCastingStructuralInterfaceWarning( HighlightInfo hi, PsiElement firstElem )
   {
-    if( hi != null )
-    {
-      String description = hi.getDescription();
-      if( description != null && (description.startsWith( "Casting '" ) || description.startsWith( "将 '" )) &&
-        (description.endsWith( "will produce 'ClassCastException' for any non-null value" ) ||
-         description.endsWith( "会为任意非 null 值生成 'ClassCastException'" )) )
-      {
-        PsiTypeElement typeElem = findTypeElement( file.findElementAt( hi.getStartOffset() ) );
-        return isStructuralType( typeElem );
-      }
-    }
-    return false;
+    PsiTypeElement typeElem = findTypeElement( firstElem );
+    return isStructuralType( typeElem );
   }
 
   // allow unary operator overload
@@ -596,17 +728,9 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
       ManJavaResolveCache.getBinaryType( ManJavaResolveCache.INDEXED_SET,
         arrayAccess.getArrayExpression().getType(), arrayAccess.getIndexExpression().getType(), arrayAccess ) != null;
   }
-  private boolean filterArrayIndexIsOutOfBounds( HighlightInfo hi, PsiFile file )
+  private boolean filterArrayIndexIsOutOfBounds( HighlightInfo hi, PsiElement firstElem )
   {
-    String description = hi.getDescription();
-    if( description == null ||
-        !description.startsWith( "Array index is out of bounds" ) &&
-        !description.startsWith( "数组索引超出范围" ) )
-    {
-      return false;
-    }
-
-    PsiArrayAccessExpressionImpl arrayAccess = getArrayAccessExpression( file.findElementAt( hi.getStartOffset() ) );
+    PsiArrayAccessExpressionImpl arrayAccess = getArrayAccessExpression( firstElem );
     if( arrayAccess == null )
     {
       return false;
@@ -626,32 +750,22 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
       hi.getDescription().contains( manifold.rt.api.anno.any.class.getTypeName() );
   }
 
-  private boolean filterUpdatedButNeverQueried( HighlightInfo hi, PsiFile file )
+  private boolean filterUpdatedButNeverQueried( HighlightInfo hi, PsiElement firstElem )
   {
     // for use with string templates when variable is referenced in the string
 
-    PsiElement elem = file.findElementAt( hi.getStartOffset() );
-    if( elem == null )
+    if( firstElem == null )
     {
       return false;
     }
 
-    if( (hi.getDescription().contains( "updated, but never queried" ) || hi.getDescription().contains( "更新，但从未被查询" )) ||
-
-        (hi.getDescription().contains( "changed" ) && hi.getDescription().contains( "is never used" )) || //todo: chinese
-
-        (hi.getDescription().startsWith( "The value ") && hi.getDescription().endsWith( "is never used")) ) //todo: chinese
+    PsiElement elem = resolveRef( firstElem ); // mainly for "is never used" cases
+    if( elem == null )
     {
-      elem = resolveRef( elem ); // mainly for "is never used" cases
-      if( elem == null )
-      {
-        return false;
-      }
-      ManStringLiteralTemplateUsageProvider finder = new ManStringLiteralTemplateUsageProvider();
-      return finder.isImplicitUsage( elem );
+      return false;
     }
-
-    return false;
+    ManStringLiteralTemplateUsageProvider finder = new ManStringLiteralTemplateUsageProvider();
+    return finder.isImplicitUsage( elem );
   }
 
   @Nullable
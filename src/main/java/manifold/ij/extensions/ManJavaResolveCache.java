@@ -28,18 +28,23 @@ import com.intellij.psi.impl.source.resolve.JavaResolveCache;
 import com.intellij.psi.impl.source.resolve.graphInference.PsiPolyExpressionUtil;
 import com.intellij.psi.impl.source.tree.ChildRole;
 import com.intellij.psi.impl.source.tree.CompositeElement;
-import com.intellij.psi.impl.source.tree.java.PsiMethodCallExpressionImpl;
 import com.intellij.psi.infos.MethodCandidateInfo;
 import com.intellij.psi.scope.ElementClassHint;
 import com.intellij.psi.scope.NameHint;
 import com.intellij.psi.scope.PsiScopeProcessor;
 import com.intellij.psi.scope.util.PsiScopesUtil;
 import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
 import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.psi.util.PsiTypesUtil;
+import com.intellij.psi.util.PsiUtil;
+import com.intellij.psi.util.TypeConversionUtil;
 import com.intellij.util.Function;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import manifold.ij.core.ManProject;
 import manifold.internal.javac.AbstractBinder.Node;
@@ -55,6 +60,9 @@ public class ManJavaResolveCache extends JavaResolveCache
   private static final String COMPARE_TO_USING = "compareToUsing";
   public static final String INDEXED_GET = "get";
   public static final String INDEXED_SET = "set";
+  private static final Key<CachedValue<Map<String, PsiMethod[]>>> KEY_OPERATOR_METHODS = new Key<>( "KEY_OPERATOR_METHODS" );
+  private static final Key<CachedValue<Map<GenericOperation, Ref<PsiType>>>> KEY_GENERIC_OPERATION_RETURN_TYPES =
+    new Key<>( "KEY_GENERIC_OPERATION_RETURN_TYPES" );
   private static Map<IElementType, String> BINARY_OP_TO_NAME = new HashMap<IElementType, String>()
   {{
     put( JavaTokenType.PLUS, "plus" );
@@ -334,7 +342,7 @@ public class ManJavaResolveCache extends JavaResolveCache
       return null;
     }
 
-    PsiMethod[] members = psiClassLeft.getAllMethods();
+    PsiMethod[] members = getOperatorMethods( psiClassLeft, opName );
 
     PsiType operationReturnType = getBinaryOperationReturnType( opName, left, right, members, context );
     if( operationReturnType != null )
@@ -350,7 +358,7 @@ public class ManJavaResolveCache extends JavaResolveCache
       {
         if( iface instanceof PsiClassType )
         {
-          operationReturnType = getBinaryOperationReturnType( opName, iface, right, psiIface.getAllMethods(), context );
+          operationReturnType = getBinaryOperationReturnType( opName, iface, right, getOperatorMethods( psiIface, opName ), context );
           if( operationReturnType != null )
           {
             return operationReturnType;
@@ -392,7 +400,7 @@ public class ManJavaResolveCache extends JavaResolveCache
       return null;
     }
 
-    PsiMethod[] members = psiClassLeft.getAllMethods();
+    PsiMethod[] members = getOperatorMethods( psiClassLeft, opName );
 
     PsiMethod method = getBinaryOperatorMethod( opName, left, right, members, context );
     if( method != null )
@@ -408,7 +416,7 @@ public class ManJavaResolveCache extends JavaResolveCache
       {
         if( iface instanceof PsiClassType )
         {
-          method = getBinaryOperatorMethod( opName, iface, right, psiIface.getAllMethods(), context );
+          method = getBinaryOperatorMethod( opName, iface, right, getOperatorMethods( psiIface, opName ), context );
           if( method != null )
           {
             return method;
@@ -420,22 +428,124 @@ public class ManJavaResolveCache extends JavaResolveCache
     return null;
   }
 
+  /**
+   * Operators resolve for nearly every binary expression having a non-primitive operand, e.g., string concatenation.
+   * Instead of scanning all of a class's methods per expression, the methods are indexed by name per class as operator
+   * names are looked up.
+   *
+   * @return The methods of {@code psiClass} named {@code opName}, including inherited and extension methods, in the
+   * order of {@link PsiClass#getAllMethods()}
+   */
+  private static PsiMethod[] getOperatorMethods( PsiClass psiClass, String opName )
+  {
+    if( opName == null )
+    {
+      return PsiMethod.EMPTY_ARRAY;
+    }
+
+    Map<String, PsiMethod[]> methodsByName = CachedValuesManager.getCachedValue( psiClass, KEY_OPERATOR_METHODS,
+      () -> CachedValueProvider.Result.create( new ConcurrentHashMap<>(), PsiModificationTracker.MODIFICATION_COUNT ) );
+    PsiMethod[] methods = methodsByName.get( opName );
+    if( methods == null )
+    {
+      // not computeIfAbsent, getAllMethods() may compute augments, which may resolve operators on this class
+      methods = Arrays.stream( psiClass.getAllMethods() )
+        .filter( m -> opName.equals( m.getName() ) )
+        .toArray( PsiMethod[]::new );
+      methodsByName.putIfAbsent( opName, methods );
+    }
+    return methods;
+  }
+
+  /**
+   * Infers the return type of operator method {@code m} where its parameter is a type variable, as the compiler would
+   * for the call {@code left.m(right)}. Results are kept until the next PSI change, which covers a highlighting pass.
+   */
+  @Nullable
+  private static PsiType getGenericBinaryOperationReturnType( PsiMethod m, PsiSubstitutor memberSubstitutor,
+                                                              PsiClassType left, PsiType right, PsiExpression context )
+  {
+    Project project = context.getProject();
+    Map<GenericOperation, Ref<PsiType>> results = CachedValuesManager.getManager( project ).getCachedValue( project,
+      KEY_GENERIC_OPERATION_RETURN_TYPES,
+      () -> CachedValueProvider.Result.create( new ConcurrentHashMap<>(), PsiModificationTracker.MODIFICATION_COUNT ), false );
+    GenericOperation key = new GenericOperation( m, left, right );
+    Ref<PsiType> result = results.get( key );
+    if( result == null )
+    {
+      result = Ref.create( inferGenericBinaryOperationReturnType( m, memberSubstitutor, left, right, context ) );
+      results.put( key, result );
+    }
+    return result.get();
+  }
+
   @Nullable
-  private static PsiType getGenericBinaryOperationReturnType( String opName, PsiType left, PsiType right, PsiExpression context )
+  private static PsiType inferGenericBinaryOperationReturnType( PsiMethod m, PsiSubstitutor memberSubstitutor,
+                                                                PsiClassType left, PsiType right, PsiExpression context )
   {
-    int paramCount = opName.equals( COMPARE_TO_USING ) ? 2 : 1;
-    PsiMethodCallExpressionImpl testExpr = (PsiMethodCallExpressionImpl)JavaPsiFacade.getInstance( context.getProject() )
-      .getParserFacade()
-      .createExpressionFromText( paramCount == 1
-        ? "((" + left.getCanonicalText() + ")null)." + opName + "((" + right.getCanonicalText() + ")null)"
-        : "((" + left.getCanonicalText() + ")null)." + opName + "((" + right.getCanonicalText() + ")null, null)", context );
-    if( !testExpr.resolveMethodGenerics().isValidResult() )
+    PsiType paramType = m.getParameterList().getParameters()[0].getType();
+    if( left.isRaw() )
+    {
+      // as with javac, members of a raw type are erased
+      PsiType erasedParam = TypeConversionUtil.erasure( paramType );
+      return erasedParam != null && TypeConversionUtil.isAssignable( erasedParam, right )
+        ? TypeConversionUtil.erasure( m.getReturnType() )
+        : null;
+    }
+
+    // compareToUsing's second argument, the operator, does not participate in inference
+    PsiType formal = memberSubstitutor.substitute( paramType );
+    PsiType actual = right instanceof PsiPrimitiveType && !PsiTypes.nullType().equals( right )
+      ? ((PsiPrimitiveType)right).getBoxedType( context )
+      : right;
+    if( formal == null || actual == null )
+    {
+      return null;
+    }
+
+    PsiTypeParameter[] typeParams = m.getTypeParameters();
+    PsiSubstitutor substitutor = memberSubstitutor;
+    if( typeParams.length > 0 )
+    {
+      PsiSubstitutor inferred = JavaPsiFacade.getInstance( context.getProject() ).getResolveHelper()
+        .inferTypeArguments( typeParams, new PsiType[] {formal}, new PsiType[] {actual}, PsiUtil.getLanguageLevel( context ) );
+      List<PsiTypeParameter> inferredParams = new ArrayList<>();
+      for( PsiTypeParameter tp : typeParams )
+      {
+        PsiType type = inferred.substitute( tp );
+        if( type != null )
+        {
+          inferredParams.add( tp );
+        }
+        // type vars not inferred from the argument get their bound, there is no target type here
+        substitutor = substitutor.put( tp, type == null ? TypeConversionUtil.typeParameterErasure( tp ) : type );
+      }
+
+      // inference does not check bounds, reject a violation as the compiler would, e.g., T=String for <T extends Number>
+      for( PsiTypeParameter tp : inferredParams )
+      {
+        PsiType type = substitutor.substitute( tp );
+        for( PsiClassType bound : tp.getExtendsListTypes() )
+        {
+          PsiType substitutedBound = substitutor.substitute( bound );
+          if( substitutedBound != null && !TypeConversionUtil.isAssignable( substitutedBound, type ) )
+          {
+            return null;
+          }
+        }
+      }
+    }
+
+    PsiType parameterizedParam = substitutor.substitute( paramType );
+    if( parameterizedParam == null || !TypeConversionUtil.isAssignable( parameterizedParam, right ) )
     {
       return null;
     }
-    return testExpr.getType();
+    return substitutor.substitute( m.getReturnType() );
   }
 
+  private record GenericOperation( PsiMethod method, PsiType left, PsiType right ) {}
+
   @Nullable
   private static PsiType getBinaryOperationReturnType( String opName, PsiType left, PsiType right, PsiMethod[] members, PsiExpression context )
   {
@@ -462,14 +572,13 @@ public class ManJavaResolveCache extends JavaResolveCache
           substitutor = getMemberSubstitutor( left, m );
           parameterizedParam = substitutor.substitute( paramType );
 
-          // If the parameter is a type variable, use the parser facade to get the return type, but this is quite slow...
-          //todo: researching a way to avoid using the parser facade and use substitutors etc.
+          // If the parameter is a type variable, infer the method's type arguments from the operand
           if( parameterizedParam instanceof PsiClassReferenceType )
           {
             PsiClass paramRef = ((PsiClassReferenceType)parameterizedParam).resolve();
             if( paramRef instanceof PsiTypeParameter )
             {
-              PsiType returnType = getGenericBinaryOperationReturnType( opName, left, right, context );
+              PsiType returnType = getGenericBinaryOperationReturnType( m, substitutor, (PsiClassType)left, right, context );
               if( returnType != null )
               {
                 return returnType;
@@ -7,17 +7,15 @@ import com.intellij.lang.ASTNode;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
-import com.intellij.openapi.module.Module;
-import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.project.ProjectManager;
-import com.intellij.openapi.roots.ModuleRootManager;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.platform.syntax.SyntaxElementType;
 import com.intellij.platform.syntax.lexer.Lexer;
 import com.intellij.pom.java.LanguageLevel;
 import manifold.ext.rt.api.Jailbreak;
+import manifold.ij.core.PreprocessorDirectiveScanner;
+import manifold.ij.core.PreprocessorSymbolIndex;
 import manifold.ij.util.WhatsActiveUtil;
 import manifold.ij.util.ReparseUtil;
 import manifold.preprocessor.PreprocessorParser;
@@ -34,6 +32,7 @@ import org.jspecify.annotations.NonNull;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import static com.intellij.java.syntax.element.JavaSyntaxTokenType.*;
 import static manifold.preprocessor.TokenType.*;
@@ -53,10 +52,18 @@ public class ManPreprocessorJavaLexerHook implements JavaLexerHook
 
   private final List<SourceStatement> _visibleStmts = new ArrayList<>();
   private final LocklessLazyVar<Definitions> _definitions = LocklessLazyVar.make( () -> {
-    Definitions definitions = makeDefinitions();
-    // add local #define symbols
+    _project = WhatsActiveUtil.getActiveProject();
+    _vfile = deriveFile();
     CharSequence text = getDocContents();
-    if( StringUtil.contains( text, "#define" ) || StringUtil.contains( text, "#undef" ) )
+    if( !hasLocalDefinitions( text ) && !hasLocalDefinitions( _lexer.getBufferSequence() ) )
+    {
+      // no local symbols, share the definitions with other files in the directory
+      return ManDefinitionsCache.getDefinitions( _project, _vfile );
+    }
+
+    Definitions definitions = new ManDefinitions( _project, _vfile );
+    // add local #define symbols
+    if( hasLocalDefinitions( text ) )
     {
       FileStatement fileStmt = new PreprocessorParser( text, null ).parseFile();
       fileStmt.execute( new ArrayList<>(), true, definitions );
@@ -64,6 +71,11 @@ public class ManPreprocessorJavaLexerHook implements JavaLexerHook
     return definitions;
   } );
 
+  private static boolean hasLocalDefinitions( CharSequence text )
+  {
+    return StringUtil.contains( text, "#define" ) || StringUtil.contains( text, "#undef" );
+  }
+
   private @NonNull CharSequence getDocContents()
   {
     if( _useLexerContents )
@@ -117,33 +129,15 @@ public class ManPreprocessorJavaLexerHook implements JavaLexerHook
 
   private VirtualFile findFile( String fqn )
   {
-    String relPath = fqn.replace( '.', '/' ) + ".java";
-    for( Project project : ProjectManager.getInstance().getOpenProjects() )
+    ManDefinitionsCache.FileLocation location = ManDefinitionsCache.findFile( fqn );
+    if( location != null )
     {
-      for( Module module : ModuleManager.getInstance( project ).getModules() )
-      {
-        ModuleRootManager mrm = ModuleRootManager.getInstance( module );
-        for( VirtualFile root : mrm.getSourceRoots() )
-        {
-          VirtualFile file = root.findFileByRelativePath( relPath );
-          if( file != null )
-          {
-            _project = project;
-            return file;
-          }
-        }
-      }
+      _project = location.project();
+      return location.file();
     }
     return null;
   }
 
-  @NotNull
-  private ManDefinitions makeDefinitions() {
-    _project = WhatsActiveUtil.getActiveProject();
-    _vfile = deriveFile();
-    return new ManDefinitions( _project, _vfile );
-  }
-
   @Override
   public void accept(@NotNull JavaLexer javaLexer) {
     _lexer = javaLexer;
@@ -233,6 +227,7 @@ public class ManPreprocessorJavaLexerHook implements JavaLexerHook
         // the whole #if statement, we only ever have just one list of visible stmts to manage
         _visibleStmts.clear();
         statement.execute(_visibleStmts, true, _definitions.get() );
+        recordSymbolReferences(statement);
 
         // add empty statement marking end of if-stmt
         _visibleStmts.add(new SourceStatement(null, statement.getTokenEnd(), statement.getTokenEnd()));
@@ -266,6 +261,23 @@ public class ManPreprocessorJavaLexerHook implements JavaLexerHook
     return true;
   }
 
+  /**
+   * Record the symbols referenced in the conditions of the statement so that changes to their definitions reparse this
+   * file, see {@link PreprocessorSymbolIndex}
+   */
+  private void recordSymbolReferences(IfStatement statement) {
+    if (!_useLexerContents || _project == null || _vfile == null || _vfile.isDirectory()) {
+      // only record files derived from the lexer's text, the active editor's file may not be the one lexed
+      return;
+    }
+    int end = Math.min(statement.getTokenEnd(), _lexer.myBufferEndOffset);
+    Set<String> symbols = PreprocessorDirectiveScanner.findReferencedSymbols(
+      _lexer.myBuffer.subSequence(_lexer.myBufferIndex, end));
+    if (!symbols.isEmpty()) {
+      PreprocessorSymbolIndex.instance(_project).addReferences(_vfile, symbols);
+    }
+  }
+
   private int findCommentRangeEnd(boolean nestedIf) {
     if (nestedIf && _visibleStmts.isEmpty()) {
       return -1;
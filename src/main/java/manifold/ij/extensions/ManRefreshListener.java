@@ -26,15 +26,18 @@ package manifold.ij.extensions;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
 import manifold.api.fs.IFile;
 import manifold.api.fs.IResource;
 import manifold.api.host.IModule;
@@ -144,12 +147,75 @@ public class ManRefreshListener
   }
   public void nukeFromOrbit()
   {
+    Map<Module, ManModule> modules = _manProject.getModules();
+    if( modules != null )
+    {
+      modules.values().forEach( ManModule::clearTypeManifoldIndex );
+    }
     for( ITypeSystemListener listener : getListeners() )
     {
       listener.refreshed();
     }
   }
 
+  /**
+   * Refreshes a batch of files having the same kind of change, e.g., from a VCS update. Unlike refreshing the files one
+   * by one, modules are resolved once per directory and listeners are notified in one pass per module, with the module's
+   * type manifold index invalidated once for all the types in the batch.
+   */
+  void refresh( List<? extends IResource> files, RefreshKind kind )
+  {
+    if( files.size() == 1 )
+    {
+      notify( files.get( 0 ), kind );
+      return;
+    }
+    SlowOperationsUtil.allowSlowOperation( "manifold.generic", () -> _refresh( files, kind ) );
+  }
+
+  private void _refresh( List<? extends IResource> files, RefreshKind kind )
+  {
+    Map<VirtualFile, Module> moduleByDir = new HashMap<>();
+    Map<IModule, Map<IFile, Set<String>>> moduleToFileFqns = new LinkedHashMap<>();
+    for( IResource res : files )
+    {
+      IFile file = toIjBackedFile( res );
+      if( file == null )
+      {
+        continue;
+      }
+
+      if( isModuleInfo( res ) )
+      {
+        // resets everything, no need to refresh the rest of the batch
+        _manProject.reset();
+        return;
+      }
+
+      VirtualFile vfile = ((IjFile)file.getPhysicalFile()).getVirtualFile();
+      VirtualFile dir = vfile.getParent();
+      Module moduleForFile;
+      if( dir != null && moduleByDir.containsKey( dir ) )
+      {
+        moduleForFile = moduleByDir.get( dir );
+      }
+      else
+      {
+        moduleForFile = ModuleUtilCore.findModuleForFile( vfile, _manProject.getNativeProject() );
+        if( dir != null )
+        {
+          moduleByDir.put( dir, moduleForFile );
+        }
+      }
+
+      collectTypes( file, moduleForFile, (module, fqns) ->
+        moduleToFileFqns.computeIfAbsent( module, key -> new LinkedHashMap<>() ).put( file, fqns ) );
+    }
+
+    List<ITypeSystemListener> listeners = getListeners();
+    moduleToFileFqns.forEach( (module, fileToFqns) -> notify( module, fileToFqns, kind, listeners ) );
+  }
+
   private void notify( IResource res, RefreshKind kind  )
   {
     SlowOperationsUtil.allowSlowOperation( "manifold.generic", () -> _notify( res, kind ) );
@@ -157,27 +223,45 @@ public class ManRefreshListener
 
   private void _notify( IResource res, RefreshKind kind  )
   {
-    if( !(res instanceof IFile) )
+    IFile file = toIjBackedFile( res );
+    if( file == null )
     {
       return;
     }
 
-    if( !(((IFile)res).getPhysicalFile() instanceof IjFile) )
+    if( isModuleInfo( res ) )
     {
+      _manProject.reset();
       return;
     }
 
-    if( isModuleInfo( res ) )
+    Module moduleForFile = ModuleUtilCore.findModuleForFile( ((IjFile)file.getPhysicalFile()).getVirtualFile(), _manProject.getNativeProject() );
+    collectTypes( file, moduleForFile, (module, fqns) -> notify( module, file, fqns, kind ) );
+  }
+
+  private IFile toIjBackedFile( IResource res )
+  {
+    if( !(res instanceof IFile) )
     {
-      _manProject.reset();
-      return;
+      return null;
+    }
+
+    if( !(((IFile)res).getPhysicalFile() instanceof IjFile) )
+    {
+      return null;
     }
 
-    IFile file = (IFile)res;
-    Set<ITypeManifold> tms = ManModule.findTypeManifoldsForFile( _manProject.getNativeProject(), file, null, null );
+    return (IFile)res;
+  }
+
+  /**
+   * Finds the types corresponding with {@code file} grouped by the module declaring them
+   */
+  private void collectTypes( IFile file, Module moduleForFile, BiConsumer<IModule, Set<String>> consumer )
+  {
+    Set<ITypeManifold> tms = ManModule.findTypeManifoldsForFile( _manProject.getNativeProject(), file, moduleForFile, null, null );
     if( tms.isEmpty() )
     {
-      Module moduleForFile = ModuleUtilCore.findModuleForFile( ((IjFile)file.getPhysicalFile()).getVirtualFile(), _manProject.getNativeProject() );
       if( moduleForFile != null )
       {
         // at least notify the module containing the file (e.g., for extensions classes)
@@ -188,7 +272,7 @@ public class ManRefreshListener
           manModule.addFromPath( file, fqnByModule );
           if( !fqnByModule.isEmpty() )
           {
-            notify( manModule, file, fqnByModule, kind );
+            consumer.accept( manModule, fqnByModule );
           }
         }
       }
@@ -206,7 +290,7 @@ public class ManRefreshListener
         fqnByModule.addAll( ((IExtensionClassProducer)tm).getExtendedTypesForFile( file ) );
       }
     }
-    moduleToFqns.forEach( (module, fqns) -> notify( module, file, fqns, kind ) );
+    moduleToFqns.forEach( consumer );
   }
 
   private boolean isModuleInfo( IResource res )
@@ -216,7 +300,8 @@ public class ManRefreshListener
 
   private void notify( IModule module, IFile file, Set<String> result, RefreshKind kind )
   {
-    RefreshRequest request = new RefreshRequest( file, result.toArray( new String[0] ), module, kind );
+    String[] types = result.toArray( new String[0] );
+    RefreshRequest request = new RefreshRequest( file, types, module, kind );
     List<ITypeSystemListener> listeners = getListeners();
     switch( kind )
     {
@@ -224,6 +309,7 @@ public class ManRefreshListener
       case MODIFICATION:
         // for creation the file system needs to be updated *before* other listeners
         notifyEarlyListeners( request, listeners );
+        invalidateTypeManifoldIndex( module, types );
         notifyNonearlyListeners( request, listeners );
         break;
 
@@ -231,7 +317,49 @@ public class ManRefreshListener
         // for deletion the file system needs to be updated *after* other listeners
         notifyNonearlyListeners( request, listeners );
         notifyEarlyListeners( request, listeners );
+        invalidateTypeManifoldIndex( module, types );
+        break;
+    }
+  }
+
+  /**
+   * Listeners still receive a request per file since type manifolds map types to files from {@link RefreshRequest#file}.
+   * But all the requests for the module are delivered in a single pass.
+   */
+  private void notify( IModule module, Map<IFile, Set<String>> fileToFqns, RefreshKind kind,
+                       List<ITypeSystemListener> listeners )
+  {
+    List<RefreshRequest> requests = new ArrayList<>( fileToFqns.size() );
+    Set<String> allTypes = new LinkedHashSet<>();
+    fileToFqns.forEach( (file, fqns) -> {
+      requests.add( new RefreshRequest( file, fqns.toArray( new String[0] ), module, kind ) );
+      allTypes.addAll( fqns );
+    } );
+    String[] types = allTypes.toArray( new String[0] );
+    switch( kind )
+    {
+      case CREATION:
+      case MODIFICATION:
+        // for creation the file system needs to be updated *before* other listeners
+        requests.forEach( request -> notifyEarlyListeners( request, listeners ) );
+        invalidateTypeManifoldIndex( module, types );
+        requests.forEach( request -> notifyNonearlyListeners( request, listeners ) );
         break;
+
+      case DELETION:
+        // for deletion the file system needs to be updated *after* other listeners
+        requests.forEach( request -> notifyNonearlyListeners( request, listeners ) );
+        requests.forEach( request -> notifyEarlyListeners( request, listeners ) );
+        invalidateTypeManifoldIndex( module, types );
+        break;
+    }
+  }
+
+  private void invalidateTypeManifoldIndex( IModule module, String[] types )
+  {
+    if( module instanceof ManModule )
+    {
+      ((ManModule)module).invalidateTypeManifoldIndex( types );
     }
   }
 
@@ -30,22 +30,37 @@ import com.intellij.psi.search.PsiShortNamesCache;
 import com.intellij.psi.util.ClassUtil;
 import com.intellij.util.ArrayUtil;
 import com.intellij.util.Processor;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import manifold.api.fs.IFile;
+import manifold.api.host.AbstractTypeSystemListener;
 import manifold.api.host.Dependency;
+import manifold.api.host.RefreshRequest;
 import manifold.api.type.ContributorKind;
 import manifold.api.type.ITypeManifold;
 import manifold.ij.core.ManModule;
 import manifold.ij.core.ManProject;
+import manifold.util.concurrent.ConcurrentHashSet;
+import manifold.util.concurrent.ConcurrentWeakHashMap;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 
 /**
+ * Maintains a simple name -> FQN index per module, built from the module's type manifolds on first use and kept current
+ * with refresh requests, so that class name lookups don't enumerate every type manifold's type names.
  */
 public class ManShortNamesCache extends PsiShortNamesCache
 {
   private final PsiManagerEx _psiManager;
+  private final ConcurrentWeakHashMap<ManModule, ShortNameIndex> _indexPerModule;
+  private final IndexUpdater _indexUpdater;
+  private volatile ManProject _listeningTo;
+  private volatile String[] _allClassNames;
 
 //  public ManShortNamesCache( PsiManagerEx manager )
 //  {
@@ -56,6 +71,8 @@ public class ManShortNamesCache extends PsiShortNamesCache
   public ManShortNamesCache( Project project )
   {
     _psiManager = (PsiManagerEx)PsiManager.getInstance( project );
+    _indexPerModule = new ConcurrentWeakHashMap<>();
+    _indexUpdater = new IndexUpdater();
   }
 
   @NotNull
@@ -88,20 +105,12 @@ public class ManShortNamesCache extends PsiShortNamesCache
     }
     visited.add( module );
 
-    for( ITypeManifold tm: module.getTypeManifolds() )
+    for( String fqn: getIndex( module ).getFqns( name ) )
     {
-      for( String fqn: tm.getAllTypeNames() )
+      PsiClass psiClass = ManifoldPsiClassCache.getPsiClass( module, fqn );
+      if( psiClass != null )
       {
-        String simpleName = ClassUtil.extractClassName( fqn );
-        if( simpleName.equals( name ) )
-        {
-          PsiClass psiClass = ManifoldPsiClassCache.getPsiClass( module, fqn );
-          if( psiClass == null )
-          {
-            return;
-          }
-          psiClasses.add( psiClass );
-        }
+        psiClasses.add( psiClass );
       }
     }
     for( Dependency d: module.getDependencies() )
@@ -122,9 +131,14 @@ public class ManShortNamesCache extends PsiShortNamesCache
       return ArrayUtil.EMPTY_STRING_ARRAY;
     }
 
-    HashSet<String> names = new HashSet<>();
-    getAllClassNames( names );
-    return names.toArray( new String[0] );
+    String[] allClassNames = _allClassNames;
+    if( allClassNames == null || _listeningTo != ManProject.manProjectFrom( _psiManager.getProject() ) )
+    {
+      HashSet<String> names = new HashSet<>();
+      getAllClassNames( names );
+      _allClassNames = allClassNames = names.toArray( new String[0] );
+    }
+    return allClassNames;
   }
 
   private void getAllClassNames( HashSet<String> dest )
@@ -148,20 +162,276 @@ public class ManShortNamesCache extends PsiShortNamesCache
     }
     visited.add( module );
 
-    for( ITypeManifold tm: module.getTypeManifolds() )
+    dest.addAll( getIndex( module ).getPrimaryNames() );
+    for( Dependency d : module.getDependencies() )
     {
-      if( tm.getContributorKind() == ContributorKind.Supplemental )
+      if( module == start || d.isExported() )
       {
-        continue;
+        findClassFqns( dest, start, (ManModule)d.getModule(), visited );
       }
-      dest.addAll( tm.getAllTypeNames().stream().map( ClassUtil::extractClassName ).collect( Collectors.toList() ) );
     }
-    for( Dependency d : module.getDependencies() )
+  }
+
+  private ShortNameIndex getIndex( ManModule module )
+  {
+    listenToChanges( module.getProject() );
+
+    ShortNameIndex index = _indexPerModule.get( module );
+    if( index == null )
     {
-      if( module == start || d.isExported() )
+      index = new ShortNameIndex( module );
+      ShortNameIndex existing = _indexPerModule.putIfAbsent( module, index );
+      index = existing == null ? index : existing;
+    }
+    return index;
+  }
+
+  private void listenToChanges( ManProject project )
+  {
+    if( _listeningTo == project )
+    {
+      return;
+    }
+
+    // the ManProject is replaced when the project is reopened, start fresh with the new one
+    _indexPerModule.clear();
+    _allClassNames = null;
+    _listeningTo = project;
+    project.getFileModificationManager().getManRefresher().addTypeSystemListenerAsWeakRef( _indexUpdater );
+  }
+
+  /**
+   * Simple name -> FQNs of the types contributed by a module's own type manifolds, excluding its dependencies.
+   */
+  private static class ShortNameIndex
+  {
+    private final ManModule _module;
+    private final Map<String, Set<String>> _byName;
+    // names of types from Primary and Partial type manifolds, Supplemental ones don't contribute new classes
+    private final Map<String, Set<String>> _primaryByName;
+    // package -> FQNs, to find the types a file may have produced before its first change
+    private final Map<String, Set<String>> _byPackage;
+    // file path -> types the file produced as of its last refresh, to find the types a modification drops
+    private final Map<String, Set<String>> _typesByFile;
+    // packages whose files have their types in _typesByFile
+    private final Set<String> _sweptPackages;
+
+    ShortNameIndex( ManModule module )
+    {
+      _module = module;
+      _byName = new ConcurrentHashMap<>();
+      _primaryByName = new ConcurrentHashMap<>();
+      _byPackage = new ConcurrentHashMap<>();
+      _typesByFile = new ConcurrentHashMap<>();
+      _sweptPackages = new ConcurrentHashSet<>();
+      for( ITypeManifold tm: module.getTypeManifolds() )
       {
-        findClassFqns( dest, start, (ManModule)d.getModule(), visited );
+        boolean primary = tm.getContributorKind() != ContributorKind.Supplemental;
+        for( String fqn: tm.getAllTypeNames() )
+        {
+          add( fqn, primary );
+        }
+      }
+    }
+
+    Set<String> getFqns( String simpleName )
+    {
+      Set<String> fqns = _byName.get( simpleName );
+      return fqns == null ? Collections.emptySet() : fqns;
+    }
+
+    Set<String> getPrimaryNames()
+    {
+      return _primaryByName.keySet();
+    }
+
+    /**
+     * Applies a creation or modification of {@code file}. Names the file produced before the change, but no longer
+     * does, are rechecked so a type renamed away doesn't linger in the index.
+     */
+    void fileChanged( IFile file, String[] types )
+    {
+      Set<String> newTypes = new ConcurrentHashSet<>();
+      newTypes.addAll( Arrays.asList( types ) );
+      Set<String> oldTypes = file == null ? null : _typesByFile.put( file.getPath().getPathString(), newTypes );
+
+      Set<String> affected = new HashSet<>( newTypes );
+      Set<String> swept = Collections.emptySet();
+      if( oldTypes == null )
+      {
+        // first change to the file since the index was built, its former types are among those in its packages. A
+        // package is swept once, after which the types of all its files are known.
+        swept = findTypesInUnsweptPackages( newTypes );
+        affected.addAll( swept );
+      }
+      else
+      {
+        affected.addAll( oldTypes );
+      }
+
+      // the refresh listener only invalidates the module's fqn -> type manifold index for the request's types
+      _module.invalidateTypeManifoldIndex( affected.toArray( new String[0] ) );
+      for( String fqn: affected )
+      {
+        recheck( fqn, null );
+      }
+      for( String fqn: swept )
+      {
+        recordFiles( fqn );
+      }
+    }
+
+    /**
+     * Applies a deletion of {@code file}. The type manifolds don't reflect the deletion yet, so a name is only removed
+     * if no other file or type manifold in the module still produces it.
+     */
+    void fileDeleted( IFile file, String[] types )
+    {
+      if( file != null )
+      {
+        _typesByFile.remove( file.getPath().getPathString() );
       }
+      _module.invalidateTypeManifoldIndex( types );
+      for( String fqn: types )
+      {
+        recheck( fqn, file );
+      }
+    }
+
+    /**
+     * Adds or removes {@code fqn} depending on whether the module's type manifolds produce it, ignoring what they
+     * produce from {@code deletedFile}.
+     */
+    private void recheck( String fqn, IFile deletedFile )
+    {
+      boolean found = false;
+      boolean primary = false;
+      for( ITypeManifold tm: _module.super_findTypeManifoldsFor( fqn, null ) )
+      {
+        if( deletedFile != null && isOnlyFrom( tm, fqn, deletedFile ) )
+        {
+          continue;
+        }
+        found = true;
+        primary = primary || tm.getContributorKind() != ContributorKind.Supplemental;
+      }
+
+      if( !found )
+      {
+        remove( fqn );
+        return;
+      }
+      add( fqn, primary );
+      if( !primary )
+      {
+        remove( _primaryByName, ClassUtil.extractClassName( fqn ), fqn );
+      }
+    }
+
+    private static boolean isOnlyFrom( ITypeManifold tm, String fqn, IFile file )
+    {
+      List<IFile> files = tm.findFilesForType( fqn );
+      return !files.isEmpty() && files.stream().allMatch( f -> f.equals( file ) );
+    }
+
+    /**
+     * @return The indexed types in the packages of {@code fqns} not swept yet, marking those packages as swept
+     */
+    private Set<String> findTypesInUnsweptPackages( Set<String> fqns )
+    {
+      Set<String> result = new HashSet<>();
+      for( String fqn: fqns )
+      {
+        String pkg = ClassUtil.extractPackageName( fqn );
+        if( _sweptPackages.add( pkg ) )
+        {
+          result.addAll( _byPackage.getOrDefault( pkg, Collections.emptySet() ) );
+        }
+      }
+      return result;
+    }
+
+    /**
+     * Records {@code fqn} as produced by the files it currently comes from, so their first change knows their types.
+     */
+    private void recordFiles( String fqn )
+    {
+      for( ITypeManifold tm: _module.super_findTypeManifoldsFor( fqn, null ) )
+      {
+        for( IFile file: tm.findFilesForType( fqn ) )
+        {
+          _typesByFile.computeIfAbsent( file.getPath().getPathString(), key -> new ConcurrentHashSet<>() ).add( fqn );
+        }
+      }
+    }
+
+    private void add( String fqn, boolean primary )
+    {
+      String simpleName = ClassUtil.extractClassName( fqn );
+      _byName.computeIfAbsent( simpleName, key -> new ConcurrentHashSet<>() ).add( fqn );
+      _byPackage.computeIfAbsent( ClassUtil.extractPackageName( fqn ), key -> new ConcurrentHashSet<>() ).add( fqn );
+      if( primary )
+      {
+        _primaryByName.computeIfAbsent( simpleName, key -> new ConcurrentHashSet<>() ).add( fqn );
+      }
+    }
+
+    void remove( String fqn )
+    {
+      String simpleName = ClassUtil.extractClassName( fqn );
+      remove( _byName, simpleName, fqn );
+      remove( _primaryByName, simpleName, fqn );
+      remove( _byPackage, ClassUtil.extractPackageName( fqn ), fqn );
+    }
+
+    private static void remove( Map<String, Set<String>> map, String key, String fqn )
+    {
+      map.computeIfPresent( key, ( k, fqns ) -> {
+        fqns.remove( fqn );
+        return fqns.isEmpty() ? null : fqns;
+      } );
+    }
+  }
+
+  /**
+   * Applies refresh requests to the indexes built so far. Note this is a non-early listener, for creation and
+   * modification the type manifolds already reflect the change, for deletion they don't yet.
+   */
+  private class IndexUpdater extends AbstractTypeSystemListener
+  {
+    @Override
+    public void refreshedTypes( RefreshRequest request )
+    {
+      if( !(request.module instanceof ManModule) )
+      {
+        return;
+      }
+
+      _allClassNames = null;
+      ShortNameIndex index = _indexPerModule.get( (ManModule)request.module );
+      if( index == null )
+      {
+        // not built yet, it will reflect the change when it is
+        return;
+      }
+
+      switch( request.kind )
+      {
+        case CREATION:
+        case MODIFICATION:
+          index.fileChanged( request.file, request.types );
+          break;
+        case DELETION:
+          index.fileDeleted( request.file, request.types );
+          break;
+      }
+    }
+
+    @Override
+    public void refreshed()
+    {
+      _indexPerModule.clear();
+      _allClassNames = null;
     }
   }
 
@@ -34,7 +34,6 @@ import com.intellij.psi.PsiPackage;
 import com.intellij.psi.impl.PsiManagerImpl;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.util.Processor;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -128,13 +127,14 @@ public class ManTypeFinder extends PsiElementFinder
     if( scope instanceof ModuleWithDependenciesScope )
     {
       Module module = ((ModuleWithDependenciesScope)scope).getModule();
-      return Collections.singletonList( ManProject.getModule( module ) );
+      ManModule manModule = ManProject.getModule( module );
+      return manModule == null || !manModule.hasVisibleTypeManifolds()
+        ? Collections.emptyList()
+        : Collections.singletonList( manModule );
     }
 
     ManProject manProject = ManProject.manProjectFrom( scope.getProject() );
-    List<ManModule> modules = new ArrayList<>( manProject.getModules().values() );
-    modules.removeIf( module -> !scope.isSearchInModuleContent( module.getIjModule() ) );
-    return modules;
+    return manProject.getModulesInScope( scope );
   }
 
   @Override
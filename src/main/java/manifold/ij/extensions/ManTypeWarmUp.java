@@ -0,0 +1,237 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import manifold.api.type.ContributorKind;
+import manifold.api.type.ITypeManifold;
+import manifold.ij.core.ManModule;
+import manifold.ij.core.ManProject;
+import manifold.util.concurrent.LocklessLazyVar;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Optionally generates all manifold types in the background after a project opens, so that the first file opened does
+ * not pay for generating its import graph on the highlighting thread.
+ * <p/>
+ * Types are generated in parallel on a bounded executor, each in a non-blocking read action that restarts after
+ * write actions, so warm-up never holds off typing. The task reports progress and can be cancelled from the status bar.
+ */
+public class ManTypeWarmUp
+{
+  private static final Logger LOG = Logger.getInstance( ManTypeWarmUp.class );
+
+  private static final String MANIFOLD_WARM_UP_ENABLED = "manifold.warm.up.enabled";
+  private static final String MANIFOLD_WARM_UP_CONCURRENCY = "manifold.warm.up.concurrency";
+  private static final LocklessLazyVar<boolean[]> WARM_UP_ENABLED = LocklessLazyVar.make( () ->
+    new boolean[] {PropertiesComponent.getInstance().getBoolean( MANIFOLD_WARM_UP_ENABLED, false )} );
+  private static final LocklessLazyVar<int[]> WARM_UP_CONCURRENCY = LocklessLazyVar.make( () ->
+    new int[] {PropertiesComponent.getInstance().getInt( MANIFOLD_WARM_UP_CONCURRENCY, getDefaultConcurrency() )} );
+
+  static boolean isEnabled()
+  {
+    return WARM_UP_ENABLED.get()[0];
+  }
+  static void setEnabled( boolean enabled )
+  {
+    WARM_UP_ENABLED.get()[0] = enabled;
+    PropertiesComponent.getInstance().setValue( MANIFOLD_WARM_UP_ENABLED, enabled, false );
+  }
+
+  static int getConcurrency()
+  {
+    return Math.max( 1, Math.min( WARM_UP_CONCURRENCY.get()[0], getMaxConcurrency() ) );
+  }
+  static void setConcurrency( int concurrency )
+  {
+    WARM_UP_CONCURRENCY.get()[0] = concurrency;
+    PropertiesComponent.getInstance().setValue( MANIFOLD_WARM_UP_CONCURRENCY, concurrency, getDefaultConcurrency() );
+  }
+
+  static int getDefaultConcurrency()
+  {
+    return Math.max( 1, getMaxConcurrency() / 2 );
+  }
+
+  static int getMaxConcurrency()
+  {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Schedules warm-up of {@code project}'s manifold types for when indexing finishes, if warm-up is enabled.
+   */
+  public static void startIfEnabled( @NotNull Project project )
+  {
+    if( !isEnabled() || !ManProject.isManifoldInUse( project ) )
+    {
+      return;
+    }
+
+    DumbService.getInstance( project ).runWhenSmart( () -> {
+      if( !project.isDisposed() )
+      {
+        ProgressManager.getInstance().run( new WarmUpTask( project ) );
+      }
+    } );
+  }
+
+  private record TypeToWarm( ManModule module, String fqn ) {}
+
+  private static class WarmUpTask extends Task.Backgroundable
+  {
+    WarmUpTask( Project project )
+    {
+      super( project, "Generating manifold types", true );
+    }
+
+    @Override
+    public void run( @NotNull ProgressIndicator indicator )
+    {
+      indicator.setIndeterminate( false );
+      indicator.setText( "Collecting manifold types" );
+      List<TypeToWarm> types = ReadAction.nonBlocking( () -> findTypes( ManProject.manProjectFrom( myProject ) ) )
+        .wrapProgress( indicator )
+        .expireWith( myProject )
+        .executeSynchronously();
+      if( types.isEmpty() )
+      {
+        return;
+      }
+
+      indicator.setText( "Generating manifold types" );
+      int concurrency = getConcurrency();
+      ExecutorService executor =
+        AppExecutorUtil.createBoundedApplicationPoolExecutor( "Manifold Type Warm-up", concurrency );
+      CountDownLatch remaining = new CountDownLatch( types.size() );
+      AtomicInteger done = new AtomicInteger();
+      try
+      {
+        for( TypeToWarm type : types )
+        {
+          executor.execute( () -> {
+            try
+            {
+              warm( type, indicator );
+            }
+            finally
+            {
+              indicator.setFraction( (double)done.incrementAndGet() / types.size() );
+              remaining.countDown();
+            }
+          } );
+        }
+
+        while( !remaining.await( 100, TimeUnit.MILLISECONDS ) )
+        {
+          indicator.checkCanceled();
+        }
+      }
+      catch( InterruptedException e )
+      {
+        Thread.currentThread().interrupt();
+      }
+      finally
+      {
+        executor.shutdownNow();
+      }
+      LOG.info( "Generated " + done.get() + " of " + types.size() + " manifold types during warm-up" );
+    }
+
+    private void warm( TypeToWarm type, ProgressIndicator indicator )
+    {
+      if( indicator.isCanceled() || myProject.isDisposed() )
+      {
+        return;
+      }
+
+      try
+      {
+        indicator.setText2( type.fqn() );
+        ReadAction.nonBlocking( () -> ManifoldPsiClassCache.getPsiClass( type.module(), type.fqn() ) )
+          .wrapProgress( indicator )
+          .expireWith( myProject )
+          .executeSynchronously();
+      }
+      catch( ProcessCanceledException ignore )
+      {
+        // warm-up cancelled or project closed
+      }
+      catch( Throwable t )
+      {
+        // the type is generated again on demand and reports its error then
+        LOG.debug( "Failed to warm up manifold type: " + type.fqn(), t );
+      }
+    }
+
+    /**
+     * Names of types produced by primary and partial type manifolds. Supplemental type manifolds produce extensions to
+     * existing types, which are handled by the augment provider.
+     */
+    private static List<TypeToWarm> findTypes( ManProject manProject )
+    {
+      List<TypeToWarm> types = new ArrayList<>();
+      Map<Module, ManModule> modules = manProject.getModules();
+      if( modules == null )
+      {
+        return types;
+      }
+
+      for( ManModule module : modules.values() )
+      {
+        Set<String> fqns = new LinkedHashSet<>();
+        for( ITypeManifold tm : module.getTypeManifolds() )
+        {
+          if( tm.getContributorKind() != ContributorKind.Supplemental )
+          {
+            ProgressManager.checkCanceled();
+            fqns.addAll( tm.getAllTypeNames() );
+          }
+        }
+        for( String fqn : fqns )
+        {
+          types.add( new TypeToWarm( module, fqn ) );
+        }
+      }
+      return types;
+    }
+  }
+}
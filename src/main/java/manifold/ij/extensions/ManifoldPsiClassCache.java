@@ -27,7 +27,6 @@ import com.intellij.ide.highlighter.JavaFileType;
 import com.intellij.lang.Language;
 import com.intellij.lang.java.JavaLanguage;
 import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ModuleRootManager;
 import com.intellij.openapi.util.text.Strings;
@@ -41,13 +40,14 @@ import com.intellij.psi.search.GlobalSearchScope;
 import java.io.File;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.tools.DiagnosticCollector;
 import javax.tools.JavaFileObject;
 
 import manifold.api.fs.IFile;
 import manifold.api.fs.IFileFragment;
 import manifold.api.host.AbstractTypeSystemListener;
-import manifold.api.host.Dependency;
 import manifold.api.host.RefreshRequest;
 import manifold.api.type.ITypeManifold;
 import manifold.ij.core.ManModule;
@@ -77,11 +77,21 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
 {
   //private static final Logger LOGGER = LoggerFactory.getLogger( ManifoldPsiClassCache.class );
 
+  /**
+   * How long a nested type generation waits for another thread generating the same top-level type. Nested generations
+   * can form a cycle across threads (A generates X which needs Y, B generates Y which needs X), in which case we give up
+   * the lock and generate redundantly rather than deadlock.
+   */
+  private static final long NESTED_LOCK_TIMEOUT_MILLIS = 500;
+
   private final ManProject _project;
   private final Set<Project> _addedListeners;
   private final ThreadLocal<Set<String>> _shortCircuit;
   private ConcurrentHashMap<String, PsiClass> _filePathToPsi;
   private final Map<ManModule, FqnCache<ManifoldPsiClass>> _fqnPsiCachePerModule;
+  private final ConcurrentHashMap<String, ReentrantLock> _typeLocks;
+  private final ManGeneratedSourceCache _generatedSourceCache;
+  private final Set<String> _refreshedTypes;
 
   public ManifoldPsiClassCache( ManProject project )
   {
@@ -90,6 +100,9 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
     _shortCircuit = ThreadLocal.withInitial( () -> new ConcurrentHashSet<>() );
     _filePathToPsi = new ConcurrentHashMap<>();
     _fqnPsiCachePerModule = new ConcurrentWeakHashMap<>();
+    _typeLocks = new ConcurrentHashMap<>();
+    _generatedSourceCache = new ManGeneratedSourceCache( project );
+    _refreshedTypes = new ConcurrentHashSet<>();
   }
 
   public ManProject getProject()
@@ -104,8 +117,11 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
   /**
    * This method is for internal use, call {@link com.intellij.psi.JavaPsiFacade#findClass(String, GlobalSearchScope)}
    * instead, which will delegate to this method if appropriate.
+   * <p/>
+   * Cache hits do not lock. Type generation locks on the top-level name of the type, so only threads generating types in
+   * the same top-level class nest wait on each other.
    */
-  synchronized PsiClass _getPsiClass( ManModule module, String fqn )
+  PsiClass _getPsiClass( ManModule module, String fqn )
   {
     if( isShortCircuit( fqn ) )
     {
@@ -168,29 +184,27 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
       listenToChanges( module.getProject() );
 
       // Find cached type...
-      ManifoldPsiClass cached = getCached( module, module, fqn );
+      ManifoldPsiClass cached = getCached( module, fqn );
       if( cached != null )
       {
         return cached;
       }
 
       // Create new module-specific type...
-      FqnCacheNode<ManifoldPsiClass> node;
       try
       {
-        node = createPrimaryType( module, fqn );
+        return createPrimaryType( module, fqn );
       }
       catch( IllegalTypeNameException itne )
       {
         // Handle the case where IntelliJ tries to resolve something untype-like
-        node = null;
+        return null;
       }
       catch( Exception e )
       {
         //LOGGER.error( "Exception creating manifold Psi class '" + fqn + "'", e );
         return PsiErrorClassUtil.create( module.getIjProject(), e );
       }
-      return node == null ? null : node.getUserData();
     }
     finally
     {
@@ -198,36 +212,22 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
     }
   }
 
-  private ManifoldPsiClass getCached( ManModule module, ManModule start, String fqn )
+  private ManifoldPsiClass getCached( ManModule module, String fqn )
   {
-    FqnCache<ManifoldPsiClass> fqnPsiCache = _fqnPsiCachePerModule.get( module );
-    FqnCacheNode<ManifoldPsiClass> node = fqnPsiCache == null ? null : fqnPsiCache.getNode( fqn );
-    if( node != null )
+    for( ManModule visible: module.getVisibleModules() )
     {
-      ManifoldPsiClass psiFacadeClass = node.getUserData();
-      if( psiFacadeClass != null && psiFacadeClass.isValid() )
+      FqnCache<ManifoldPsiClass> fqnPsiCache = _fqnPsiCachePerModule.get( visible );
+      FqnCacheNode<ManifoldPsiClass> node = fqnPsiCache == null ? null : fqnPsiCache.getNode( fqn );
+      if( node != null )
       {
-        Module targetModule = psiFacadeClass.getModule();
-        GlobalSearchScope scope = GlobalSearchScope.moduleWithDependenciesScope( module.getIjModule() );
-        if( scope.isSearchInModuleContent( targetModule ) )
+        ManifoldPsiClass psiFacadeClass = node.getUserData();
+        if( psiFacadeClass != null && psiFacadeClass.isValid() &&
+          visible.getModuleWithDependenciesScope().isSearchInModuleContent( psiFacadeClass.getModule() ) )
         {
           return psiFacadeClass;
         }
       }
     }
-
-    for( Dependency d: module.getDependencies() )
-    {
-      if( module == start || d.isExported() )
-      {
-        ManifoldPsiClass cached = getCached( (ManModule) d.getModule(), start, fqn );
-        if( cached != null )
-        {
-          return cached;
-        }
-      }
-    }
-
     return null;
   }
 
@@ -290,7 +290,7 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
   /**
    * Create a type corresponding with a Primary or Partial type manifold, as opposed to a Supplemental one.
    */
-  private FqnCacheNode<ManifoldPsiClass> createPrimaryType( ManModule module, String fqn )
+  private ManifoldPsiClass createPrimaryType( ManModule module, String fqn )
   {
     Set<ITypeManifold> tms = module.findTypeManifoldsFor( fqn, tm -> tm.getContributorKind() == Primary ||
                                                                      tm.getContributorKind() == Partial );
@@ -309,31 +309,61 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
     ITypeManifold found = null;
     if( !tms.isEmpty() )
     {
-      String result = "";
-      DiagnosticCollector<JavaFileObject> issues = new DiagnosticCollector<>();
-      String topLevelFqn = null;
-      boolean isTestContent = false;
-      for( ITypeManifold tm : tms )
+      // MUST start with top-level class, otherwise the classes enclosing an inner class will have null userData
+      // cached with their names, preventing the them from ever loading.  So when we cache a class name we always get
+      // its outermost enclosing class and cache that and the entire nest of classes it contains, top-down.  See the
+      // cacheAll() call following the contribute loop.
+      String topLevelFqn = findTopLevelFqn( tms.iterator().next(), fqn );
+
+      ReentrantLock lock = lockType( topLevelFqn );
+      try
       {
-        // MUST start with top-level class, otherwise the classes enclosing an inner class will have null userData
-        // cached with their names, preventing the them from ever loading.  So when we cache a class name we always get
-        // its outermost enclosing class and cache that and the entire nest of classes it contains, top-down.  See the
-        // cacheAll() call following this for loop.
-        topLevelFqn = topLevelFqn == null ? findTopLevelFqn( tm, fqn ) : topLevelFqn;
+        // another thread may have generated the type while we waited for the lock
+        ManifoldPsiClass cached = getCached( module, fqn );
+        if( cached != null )
+        {
+          return cached;
+        }
 
-        if( found != null && (found.getContributorKind() == Primary || tm.getContributorKind() == Primary) )
+        // a type refreshed during this session may depend on resources other than its own, don't trust the disk cache
+        ManGeneratedSourceCache.Key diskKey = _refreshedTypes.contains( topLevelFqn )
+          ? null
+          : _generatedSourceCache.makeKey( topLevelFqn, tms );
+        ManGeneratedSourceCache.Entry diskEntry = diskKey == null ? null : _generatedSourceCache.load( diskKey );
+
+        String result = diskEntry == null ? "" : diskEntry.source();
+        DiagnosticCollector<JavaFileObject> issues = diskEntry == null ? new DiagnosticCollector<>() : diskEntry.issues();
+        Set<IjFile> reads = new HashSet<>();
+        boolean isTestContent = false;
+        for( ITypeManifold tm : tms )
         {
-          throw new ConflictingTypeManifoldsException( fqn, found, tm );
+          if( found != null && (found.getContributorKind() == Primary || tm.getContributorKind() == Primary) )
+          {
+            throw new ConflictingTypeManifoldsException( fqn, found, tm );
+          }
+          found = tm;
+          if( diskEntry == null )
+          {
+            String contributed = result;
+            result = IjFile.recordReads( reads, () -> tm.contribute( null, topLevelFqn, false, contributed, issues ) );
+          }
+
+          isTestContent = isTestContent( module, topLevelFqn, isTestContent, tm );
         }
-        found = tm;
-        result = tm.contribute( null, topLevelFqn, false, result, issues );
 
-        isTestContent = isTestContent( module, topLevelFqn, isTestContent, tm );
-      }
+        if( diskEntry == null && diskKey != null )
+        {
+          _generatedSourceCache.store( diskKey, topLevelFqn, tms, result, issues, reads );
+        }
 
-      ManModule actualModule = (ManModule)found.getModule();
-      PsiClass delegate = createPsiClass( actualModule, topLevelFqn, isTestContent, result );
-      cacheAll( delegate, actualModule, found, issues );
+        ManModule actualModule = (ManModule)found.getModule();
+        PsiClass delegate = createPsiClass( actualModule, topLevelFqn, isTestContent, result );
+        cacheAll( delegate, actualModule, found, issues );
+      }
+      finally
+      {
+        unlockType( topLevelFqn, lock );
+      }
     }
 
     FqnCache<ManifoldPsiClass> fqnPsiCache = _fqnPsiCachePerModule.computeIfAbsent( module, key -> new FqnCache<>() );
@@ -342,7 +372,64 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
       // cache the miss
       fqnPsiCache.add( fqn );
     }
-    return fqnPsiCache.getNode( fqn );
+    FqnCacheNode<ManifoldPsiClass> node = fqnPsiCache.getNode( fqn );
+    return node == null ? null : node.getUserData();
+  }
+
+  /**
+   * Acquire the generation lock for {@code topLevelFqn}. Locks are created on demand and retired when released with no
+   * waiters, so the lock map holds only the types currently being generated.
+   *
+   * @return The acquired lock or null if this is a nested generation that timed out waiting for another thread, see
+   * {@link #NESTED_LOCK_TIMEOUT_MILLIS}.
+   */
+  private ReentrantLock lockType( String topLevelFqn )
+  {
+    // the short-circuit set holds the names this thread is resolving, more than one indicates a nested generation
+    boolean nested = _shortCircuit.get().size() > 1;
+    while( true )
+    {
+      ReentrantLock lock = _typeLocks.computeIfAbsent( topLevelFqn, key -> new ReentrantLock() );
+      if( nested )
+      {
+        try
+        {
+          if( !lock.tryLock( NESTED_LOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS ) )
+          {
+            return null;
+          }
+        }
+        catch( InterruptedException e )
+        {
+          Thread.currentThread().interrupt();
+          return null;
+        }
+      }
+      else
+      {
+        lock.lock();
+      }
+
+      if( _typeLocks.get( topLevelFqn ) == lock )
+      {
+        return lock;
+      }
+      // the lock was retired while we waited for it, try again with the current one
+      lock.unlock();
+    }
+  }
+
+  private void unlockType( String topLevelFqn, ReentrantLock lock )
+  {
+    if( lock == null )
+    {
+      return;
+    }
+    if( lock.getHoldCount() == 1 && !lock.hasQueuedThreads() )
+    {
+      _typeLocks.remove( topLevelFqn, lock );
+    }
+    lock.unlock();
   }
 
   private static boolean isTestContent( ManModule module, String topLevelFqn, boolean isTestContent, ITypeManifold tm )
@@ -355,6 +442,32 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
         module.getIjModule() ).getFileIndex().isInTestSourceContent( virtualFile ) );
   }
 
+  /**
+   * @return The top-level type enclosing {@code fqn} per the module's type manifolds, or {@code fqn} if none of them
+   * produces it e.g., the type's file is deleted
+   */
+  private static String findTopLevelFqn( ManModule module, String fqn )
+  {
+    Set<ITypeManifold> tms = module.findTypeManifoldsFor( fqn, tm -> tm.getContributorKind() == Primary ||
+                                                                     tm.getContributorKind() == Partial );
+    if( !tms.isEmpty() )
+    {
+      ITypeManifold tm = tms.iterator().next();
+      String name = fqn;
+      while( !tm.isTopLevelType( name ) )
+      {
+        int lastDot = name.lastIndexOf( '.' );
+        if( lastDot <= 0 )
+        {
+          return fqn;
+        }
+        name = name.substring( 0, lastDot );
+      }
+      return name;
+    }
+    return fqn;
+  }
+
   public static String findTopLevelFqn( ITypeManifold tm, String fqn )
   {
     if( tm.isTopLevelType( fqn ) )
@@ -468,7 +581,7 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
   }
 
   @Override
-  public synchronized void refreshedTypes( RefreshRequest request )
+  public void refreshedTypes( RefreshRequest request )
   {
     if( !(request.module instanceof ManModule) )
     {
@@ -479,18 +592,31 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
     FqnCache<ManifoldPsiClass> fqnPsiCache = _fqnPsiCachePerModule.computeIfAbsent( module, key -> new FqnCache<>() );
     for( String type : request.types )
     {
-      //removeDependentTypes( type, map, module );
-      fqnPsiCache.remove( type );
+      // generation locks on the top-level type, wait for an in-flight generation of it so it can't cache a stale class
+      // after we remove it
+      String topLevelFqn = findTopLevelFqn( module, type );
+      _refreshedTypes.add( topLevelFqn );
+
+      ReentrantLock lock = lockType( topLevelFqn );
+      try
+      {
+        //removeDependentTypes( type, map, module );
+        fqnPsiCache.remove( type );
+      }
+      finally
+      {
+        unlockType( topLevelFqn, lock );
+      }
     }
     if( request.file != null )
     {
       String pathString = request.file.getPath().getPathString();
-      if( _filePathToPsi.containsKey( pathString ) )
+      PsiClass facade = _filePathToPsi.get( pathString );
+      if( facade != null )
       {
-        PsiClass facade = _filePathToPsi.get( pathString );
-        if( removeFromCache( module, module, facade ) )
+        if( removeFromCache( module, facade ) )
         {
-          _filePathToPsi.remove( pathString );
+          _filePathToPsi.remove( pathString, facade );
           ApplicationManager.getApplication().invokeLater( () ->
             ApplicationManager.getApplication().runWriteAction( () ->
               ((PsiModificationTrackerImpl)facade.getManager().getModificationTracker()).incCounter() ) );
@@ -499,27 +625,16 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
     }
   }
 
-  public boolean removeFromCache( ManModule module, ManModule start, PsiClass removedFacade )
+  public boolean removeFromCache( ManModule module, PsiClass removedFacade )
   {
-    FqnCache<ManifoldPsiClass> fqnPsiCache =
-      _fqnPsiCachePerModule.computeIfAbsent( module, key -> new FqnCache<>() );
-
-    if( fqnPsiCache.remove( removedFacade.getQualifiedName() ) )
-    {
-      return true;
-    }
-
-    for( Dependency d: module.getDependencies() )
+    for( ManModule visible: module.getVisibleModules() )
     {
-      if( module == start || d.isExported() )
+      FqnCache<ManifoldPsiClass> fqnPsiCache = _fqnPsiCachePerModule.get( visible );
+      if( fqnPsiCache != null && fqnPsiCache.remove( removedFacade.getQualifiedName() ) )
       {
-        if( removeFromCache( (ManModule) d.getModule(), start, removedFacade ) )
-        {
-          return true;
-        }
+        return true;
       }
     }
-
     return false;
   }
 
@@ -19,14 +19,22 @@
 
 package manifold.ij.extensions;
 
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Key;
 import com.intellij.psi.*;
 import com.intellij.psi.impl.source.PsiExtensibleClass;
 import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.*;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import manifold.api.gen.SrcAnnotated;
 import manifold.api.gen.SrcAnnotationExpression;
@@ -48,10 +56,33 @@ import org.jetbrains.annotations.NotNull;
  */
 public class StubBuilder
 {
+  private static final int MAX_BINARY_STUBS = 1_000;
+  private static final Key<CachedValue<Map<StubKey, BinaryStub>>> KEY_BINARY_STUBS = new Key<>( "KEY_BINARY_STUBS" );
+
+  /**
+   * Stubs of binary classes are kept on the project, they are dropped when the project's roots change or the project
+   * is disposed
+   */
+  private static Map<StubKey, BinaryStub> getBinaryStubs( Project project )
+  {
+    return CachedValuesManager.getManager( project ).getCachedValue( project, KEY_BINARY_STUBS,
+      () -> CachedValueProvider.Result.create( new LinkedHashMap<StubKey, BinaryStub>( 16, 0.75f, true )
+      {
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<StubKey, BinaryStub> eldest )
+        {
+          return size() > MAX_BINARY_STUBS;
+        }
+      }, ProjectRootManager.getInstance( project ) ), false );
+  }
+
   public SrcClass make( String fqn, ManModule module )
   {
     return make( fqn, module, true );
   }
+  /**
+   * Stubs of binary classes made without extensions are shared per module, callers must not modify them.
+   */
   public SrcClass make( String fqn, ManModule module, boolean includeExtenstions )
   {
     JavaPsiFacade javaPsiFacade = JavaPsiFacade.getInstance( module.getIjProject() );
@@ -64,7 +95,30 @@ public class StubBuilder
         return null;
       }
     }
-    return makeSrcClass( fqn, psiClass, module, includeExtenstions );
+
+    if( includeExtenstions || !(psiClass instanceof PsiCompiledElement) )
+    {
+      // extensions and source classes change, binary classes change only with the module's classpath
+      return makeSrcClass( fqn, psiClass, module, includeExtenstions );
+    }
+
+    StubKey key = new StubKey( module, fqn );
+    Map<StubKey, BinaryStub> binaryStubs = getBinaryStubs( module.getIjProject() );
+    synchronized( binaryStubs )
+    {
+      BinaryStub stub = binaryStubs.get( key );
+      if( stub != null && stub.psiClass() == psiClass )
+      {
+        return stub.srcClass();
+      }
+    }
+
+    SrcClass srcClass = makeSrcClass( fqn, psiClass, module, false );
+    synchronized( binaryStubs )
+    {
+      binaryStubs.put( key, new BinaryStub( psiClass, srcClass ) );
+    }
+    return srcClass;
   }
 
   private SrcClass makeSrcClass( String fqn, PsiClass psiClass, ManModule module, boolean includeExtensions )
@@ -438,4 +492,8 @@ public class StubBuilder
       srcAnnotated.addAnnotation( annoExpr );
     }
   }
+
+  private record StubKey( ManModule module, String fqn ) {}
+
+  private record BinaryStub( PsiClass psiClass, SrcClass srcClass ) {}
 }
@@ -37,12 +37,39 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.function.Supplier;
 import manifold.api.fs.IFile;
 
 public class IjFile extends IjResource implements IFile
 {
+  // files opened on this thread while recording, see recordReads()
+  private static final ThreadLocal<Set<IjFile>> READS = new ThreadLocal<>();
+
   private Charset charset = StandardCharsets.UTF_8;
 
+  /**
+   * Run {@code task} adding the files it opens for reading to {@code reads}. A nested recording adds its files to the
+   * enclosing one too.
+   */
+  public static <T> T recordReads( Set<IjFile> reads, Supplier<T> task )
+  {
+    Set<IjFile> outer = READS.get();
+    READS.set( reads );
+    try
+    {
+      return task.get();
+    }
+    finally
+    {
+      READS.set( outer );
+      if( outer != null )
+      {
+        outer.addAll( reads );
+      }
+    }
+  }
+
   IjFile( IjFileSystem fs, VirtualFile file )
   {
     super( fs, file );
@@ -64,6 +91,12 @@ public class IjFile extends IjResource implements IFile
   @Override
   public InputStream openInputStream() throws IOException
   {
+    Set<IjFile> reads = READS.get();
+    if( reads != null )
+    {
+      reads.add( this );
+    }
+
     if( _virtualFile != null &&
       (getExtension().equalsIgnoreCase( "jar" ) ||
         getExtension().equalsIgnoreCase( "zip" ) ||
@@ -101,10 +101,15 @@ public class ManTemplateFileViewProvider extends MultiplePsiFilesPerDocumentFile
     _contentLang = templateLanguage;
   }
 
+  /**
+   * The template tree's content, code, and comment tokens are reparseable leaves, see
+   * {@link manifold.ij.template.psi.ManTemplateTokenType#reparseLeaf}, so typing within one replaces just that leaf. The
+   * Java and template data trees are built from text extracted from the full template, they are still rebuilt in full.
+   */
   @Override
   public boolean supportsIncrementalReparse( @NotNull Language rootLanguage )
   {
-    return false;
+    return rootLanguage == _baseLang;
   }
 
   @NotNull
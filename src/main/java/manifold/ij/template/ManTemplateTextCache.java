@@ -0,0 +1,372 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.template;
+
+import com.intellij.lexer.Lexer;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.UserDataHolderEx;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.templateLanguages.TemplateDataElementType.RangeCollector;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.util.text.ImmutableCharSequence;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+
+import static manifold.ij.template.psi.ManTemplateTokenType.DIRECTIVE;
+import static manifold.ij.template.psi.ManTemplateTokenType.EXPR;
+import static manifold.ij.template.psi.ManTemplateTokenType.STMT;
+
+/**
+ * Builds the Java text of a template, which is the concatenation of its directives, statements, and expressions.
+ * <p/>
+ * The template's tokens are cached between reparses. After an edit only the tokens from the edit to the first token
+ * the lexer resynchronizes with are relexed, the rest are shifted. The resulting text is a view over the template
+ * source instead of a copy of it.
+ */
+class ManTemplateTextCache
+{
+  private static final Key<ManTemplateTextCache> KEY = Key.create( "ManTemplateTextCache" );
+
+  /**
+   * The template lexer looks ahead at most this many chars past a token to determine where it ends
+   */
+  private static final int LOOKAHEAD = 4;
+
+  private CharSequence _source;
+  private Tokens _tokens;
+
+  static ManTemplateTextCache instance( UserDataHolderEx holder )
+  {
+    ManTemplateTextCache cache = holder.getUserData( KEY );
+    return cache != null ? cache : holder.putUserDataIfAbsent( KEY, new ManTemplateTextCache() );
+  }
+
+  /**
+   * Update the cached tokens to {@code sourceCode}, add the template's content ranges to {@code outerRangesCollector},
+   * and make the Java text of the template.
+   */
+  synchronized TemplateText update( @NotNull CharSequence sourceCode, @NotNull Lexer baseLexer,
+                                    @NotNull RangeCollector outerRangesCollector )
+  {
+    // the tokens and the text reference the source, it must not change
+    CharSequence source = sourceCode instanceof ImmutableCharSequence || sourceCode instanceof String
+                          ? sourceCode
+                          : sourceCode.toString();
+
+    _tokens = _source == null ? lex( source, baseLexer ) : relex( source, baseLexer );
+    _source = source;
+    return makeTemplateText( source, _tokens, outerRangesCollector );
+  }
+
+  private static Tokens lex( CharSequence source, Lexer baseLexer )
+  {
+    Tokens tokens = new Tokens( 64 );
+    baseLexer.start( source );
+    while( baseLexer.getTokenType() != null )
+    {
+      tokens.add( baseLexer.getTokenType(), baseLexer.getTokenStart(), baseLexer.getTokenEnd(), baseLexer.getState() );
+      baseLexer.advance();
+    }
+    return tokens;
+  }
+
+  private Tokens relex( CharSequence source, Lexer baseLexer )
+  {
+    Tokens old = _tokens;
+    int oldLength = _source.length();
+    int newLength = source.length();
+    int prefix = StringUtil.commonPrefixLength( _source, source );
+    if( prefix == oldLength && prefix == newLength )
+    {
+      return old;
+    }
+    int suffix = Math.min( StringUtil.commonSuffixLength( _source, source ), Math.min( oldLength, newLength ) - prefix );
+    int delta = newLength - oldLength;
+    int changeEnd = newLength - suffix;
+
+    // tokens ending far enough before the change are not affected by it
+    int first = old.findFirstEndingAfter( prefix - LOOKAHEAD );
+    if( first >= old._count )
+    {
+      return lex( source, baseLexer );
+    }
+
+    Tokens tokens = new Tokens( old._count + 16 );
+    tokens.addAll( old, 0, first, 0 );
+
+    // relex from the first affected token until a token starts after the change where an old token with the same
+    // state started, from there on the old tokens are the same
+    baseLexer.start( source, old._starts[first], newLength, old._states[first] );
+    int oldIndex = first;
+    int resume = -1;
+    while( baseLexer.getTokenType() != null )
+    {
+      int start = baseLexer.getTokenStart();
+      if( start > changeEnd )
+      {
+        int oldStart = start - delta;
+        while( oldIndex < old._count && old._starts[oldIndex] < oldStart )
+        {
+          oldIndex++;
+        }
+        if( oldIndex < old._count && old._starts[oldIndex] == oldStart && old._states[oldIndex] == baseLexer.getState() )
+        {
+          resume = oldIndex;
+          break;
+        }
+      }
+      tokens.add( baseLexer.getTokenType(), start, baseLexer.getTokenEnd(), baseLexer.getState() );
+      baseLexer.advance();
+    }
+    if( resume >= 0 )
+    {
+      tokens.addAll( old, resume, old._count, delta );
+    }
+    return tokens;
+  }
+
+  private static TemplateText makeTemplateText( CharSequence source, Tokens tokens, RangeCollector outerRangesCollector )
+  {
+    List<Integer> expressionOffsets = new ArrayList<>();
+    List<Integer> statementOffsets = new ArrayList<>();
+    List<Integer> directiveOffsets = new ArrayList<>();
+    int[] sourceStarts = new int[tokens._count];
+    int[] textStarts = new int[tokens._count + 1];
+    int segments = 0;
+    int length = 0;
+    for( int i = 0; i < tokens._count; i++ )
+    {
+      IElementType tokenType = tokens._types[i];
+      int start = tokens._starts[i];
+      int end = tokens._ends[i];
+      if( tokenType == STMT || tokenType == EXPR || tokenType == DIRECTIVE )
+      {
+        sourceStarts[segments] = start;
+        textStarts[segments++] = length;
+        int offset = length + offsetNoWhitespace( source, start, end );
+        if( tokenType == EXPR )
+        {
+          expressionOffsets.add( offset );
+        }
+        else if( tokenType == STMT )
+        {
+          statementOffsets.add( offset );
+        }
+        else // DIRECTIVE
+        {
+          directiveOffsets.add( offset );
+        }
+        length += end - start;
+      }
+      else
+      {
+        outerRangesCollector.addOuterRange( TextRange.create( start, end ) );
+      }
+    }
+    textStarts[segments] = length;
+    return new TemplateText( source, sourceStarts, textStarts, segments,
+      expressionOffsets, statementOffsets, directiveOffsets );
+  }
+
+  private static int offsetNoWhitespace( CharSequence source, int start, int end )
+  {
+    int offset = start;
+    while( offset < end && Character.isWhitespace( source.charAt( offset ) ) )
+    {
+      offset++;
+    }
+    return offset - start;
+  }
+
+  private static class Tokens
+  {
+    private IElementType[] _types;
+    private int[] _starts;
+    private int[] _ends;
+    private int[] _states;
+    private int _count;
+
+    private Tokens( int capacity )
+    {
+      _types = new IElementType[capacity];
+      _starts = new int[capacity];
+      _ends = new int[capacity];
+      _states = new int[capacity];
+    }
+
+    private void add( IElementType type, int start, int end, int state )
+    {
+      ensureCapacity( _count + 1 );
+      _types[_count] = type;
+      _starts[_count] = start;
+      _ends[_count] = end;
+      _states[_count] = state;
+      _count++;
+    }
+
+    private void addAll( Tokens tokens, int from, int to, int shift )
+    {
+      int count = to - from;
+      ensureCapacity( _count + count );
+      System.arraycopy( tokens._types, from, _types, _count, count );
+      System.arraycopy( tokens._states, from, _states, _count, count );
+      for( int i = 0; i < count; i++ )
+      {
+        _starts[_count + i] = tokens._starts[from + i] + shift;
+        _ends[_count + i] = tokens._ends[from + i] + shift;
+      }
+      _count += count;
+    }
+
+    /**
+     * @return The index of the first token ending after {@code offset}, or the token count if there is none
+     */
+    private int findFirstEndingAfter( int offset )
+    {
+      int low = 0;
+      int high = _count - 1;
+      while( low <= high )
+      {
+        int mid = (low + high) >>> 1;
+        if( _ends[mid] <= offset )
+        {
+          low = mid + 1;
+        }
+        else
+        {
+          high = mid - 1;
+        }
+      }
+      return low;
+    }
+
+    private void ensureCapacity( int capacity )
+    {
+      if( capacity > _starts.length )
+      {
+        int newCapacity = Math.max( capacity, _starts.length * 2 );
+        _types = Arrays.copyOf( _types, newCapacity );
+        _starts = Arrays.copyOf( _starts, newCapacity );
+        _ends = Arrays.copyOf( _ends, newCapacity );
+        _states = Arrays.copyOf( _states, newCapacity );
+      }
+    }
+  }
+
+  /**
+   * The Java text of a template as a view of its directive, statement, and expression ranges in the template source.
+   * Sequential access, which is how the Java lexer reads it, is constant time.
+   */
+  static class TemplateText implements CharSequence
+  {
+    private final CharSequence _source;
+    private final int[] _sourceStarts;
+    private final int[] _textStarts;
+    private final int _segments;
+    private final List<Integer> _expressionOffsets;
+    private final List<Integer> _statementOffsets;
+    private final List<Integer> _directiveOffsets;
+    private int _lastSegment;
+
+    private TemplateText( CharSequence source, int[] sourceStarts, int[] textStarts, int segments,
+                          List<Integer> expressionOffsets, List<Integer> statementOffsets, List<Integer> directiveOffsets )
+    {
+      _source = source;
+      _sourceStarts = sourceStarts;
+      _textStarts = textStarts;
+      _segments = segments;
+      _expressionOffsets = expressionOffsets;
+      _statementOffsets = statementOffsets;
+      _directiveOffsets = directiveOffsets;
+    }
+
+    List<Integer> getExpressionOffsets()
+    {
+      return _expressionOffsets;
+    }
+
+    List<Integer> getStatementOffsets()
+    {
+      return _statementOffsets;
+    }
+
+    List<Integer> getDirectiveOffsets()
+    {
+      return _directiveOffsets;
+    }
+
+    @Override
+    public int length()
+    {
+      return _textStarts[_segments];
+    }
+
+    @Override
+    public char charAt( int index )
+    {
+      if( index < 0 || index >= length() )
+      {
+        throw new IndexOutOfBoundsException( "Index: " + index + ", length: " + length() );
+      }
+
+      int segment = _lastSegment;
+      if( index < _textStarts[segment] || index >= _textStarts[segment + 1] )
+      {
+        segment = findSegment( index );
+        _lastSegment = segment;
+      }
+      return _source.charAt( _sourceStarts[segment] + index - _textStarts[segment] );
+    }
+
+    private int findSegment( int index )
+    {
+      int segment = Arrays.binarySearch( _textStarts, 0, _segments, index );
+      return segment >= 0 ? segment : -segment - 2;
+    }
+
+    @NotNull
+    @Override
+    public CharSequence subSequence( int start, int end )
+    {
+      if( start < 0 || end > length() || start > end )
+      {
+        throw new IndexOutOfBoundsException( "Range: " + start + ", " + end + ", length: " + length() );
+      }
+
+      StringBuilder sb = new StringBuilder( end - start );
+      for( int i = start; i < end; i++ )
+      {
+        sb.append( charAt( i ) );
+      }
+      return sb.toString();
+    }
+
+    @NotNull
+    @Override
+    public String toString()
+    {
+      return subSequence( 0, length() ).toString();
+    }
+  }
+}
@@ -21,36 +21,56 @@ package manifold.ij.template.psi;
 
 import com.intellij.lexer.LexerBase;
 import com.intellij.psi.tree.IElementType;
-import manifold.rt.api.util.Stack;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import static manifold.ij.template.psi.ManTemplateTokenType.*;
 
+/**
+ * Tokenizes templates one token per {@link #advance()}, directly from the buffer.
+ * <p/>
+ * The lexer is restartable: {@link #getState()} encodes the mode the lexer is in at the start of the current token,
+ * e.g., inside a {@code <% %>} statement, along with whether a string or char literal is open, so highlighting and
+ * reparsing can relex from any token boundary instead of from the start of the file.
+ */
 public class ManTemplateLexer extends LexerBase
 {
+  private static final int MODE_CONTENT = 0;
+  private static final int MODE_COMMENT = 1;
+  private static final int MODE_EXPR_BRACE = 2;
+  private static final int MODE_EXPR_ANGLE = 3;
+  private static final int MODE_STMT = 4;
+  private static final int MODE_DIRECTIVE = 5;
+  private static final int MODE_MASK = 0x7;
+  private static final int PARSING_STRING = 0x8;
+  private static final int PARSING_CHAR_LITERAL = 0x10;
+
   private CharSequence myBuffer;
   private int myEndOffset;
 
-  private int _index;
-  private Stack<Token> _tokens;
-  private CharSequence _text;
-  private StringBuilder _stuff;
-
-  private int _tokenIndex;
+  private int _mode;
   private boolean _isParsingString;
   private boolean _isParsingCharLiteral;
 
+  private ManTemplateTokenType _tokenType;
+  private int _tokenStart;
+  private int _tokenEnd;
+  private int _tokenState;
+
+  // a delimiter found while scanning the preceding content, it is the next token
+  private ManTemplateTokenType _nextDelimiter;
+  private int _nextDelimiterEnd;
+
   @Override
   public void start( @NotNull CharSequence buffer, int startOffset, int endOffset, int initialState )
   {
     myBuffer = buffer;
     myEndOffset = endOffset;
 
-    _tokens = new Stack<>();
-    _text = buffer.subSequence( startOffset, endOffset );
-    _index = initialState - startOffset;
-    tokenize();
-    _tokenIndex = -1;
+    _mode = initialState & MODE_MASK;
+    _isParsingString = (initialState & PARSING_STRING) != 0;
+    _isParsingCharLiteral = (initialState & PARSING_CHAR_LITERAL) != 0;
+    _nextDelimiter = null;
+    _tokenEnd = startOffset;
     nextToken();
   }
 
@@ -63,31 +83,26 @@ public class ManTemplateLexer extends LexerBase
   @Override
   public int getState()
   {
-    return getToken() == null ? 0 : myEndOffset;
-  }
-
-  private Token getToken()
-  {
-    return _tokenIndex < 0 ? null : _tokens.get( _tokenIndex );
+    return _tokenState;
   }
 
   @Nullable
   @Override
   public IElementType getTokenType()
   {
-    return getToken() == null ? null : getToken()._type;
+    return _tokenType;
   }
 
   @Override
   public int getTokenStart()
   {
-    return getToken() == null ? 0 : getToken()._offset;
+    return _tokenStart;
   }
 
   @Override
   public int getTokenEnd()
   {
-    return getToken() == null ? 0 : getToken()._offset + getToken()._value.length();
+    return _tokenEnd;
   }
 
   @Override
@@ -105,130 +120,200 @@ public class ManTemplateLexer extends LexerBase
 
   private void nextToken()
   {
-    if( _tokenIndex+1 < _tokens.size() )
-    {
-      _tokenIndex++;
-    }
-    else
+    _tokenStart = _tokenEnd;
+    _tokenState = _mode |
+                  (_isParsingString ? PARSING_STRING : 0) |
+                  (_isParsingCharLiteral ? PARSING_CHAR_LITERAL : 0);
+
+    if( _nextDelimiter == null )
     {
-      _tokenIndex = -1;
+      if( _tokenStart >= myEndOffset )
+      {
+        _tokenType = null;
+        return;
+      }
+
+      int stuffEnd = scanStuff( _tokenStart );
+      if( stuffEnd > _tokenStart )
+      {
+        _tokenType = getStuffType();
+        _tokenEnd = stuffEnd;
+        return;
+      }
     }
+
+    _tokenType = _nextDelimiter;
+    _tokenEnd = _nextDelimiterEnd;
+    _nextDelimiter = null;
+    _mode = getModeAfter( _tokenType );
   }
 
-  private void tokenize()
+  /**
+   * Scans content, code, or comment text from {@code index} up to the next delimiter, which becomes the next token.
+   *
+   * @return The end of the text, which is where the next delimiter begins, or the end of the buffer
+   */
+  private int scanStuff( int index )
   {
-    _stuff = new StringBuilder();
-    _isParsingString = false;
-    _isParsingCharLiteral = false;
-    int index = _index;
     boolean escaped = false;
-    while( true )
+    while( index < myEndOffset )
     {
-      if( index >= _text.length() )
-      {
-        break;
-      }
-
-      int before = index;
-      char c = _text.charAt( index );
+      char c = myBuffer.charAt( index );
 
-      if( !escaped && c == '\\' && !isInCode() && _text.length() > index+1 &&
+      if( !escaped && c == '\\' && !isInCode() &&
           (charIs( index+1, '<' ) || charIs( index+1, '$' )) )
       {
-        _stuff.append( c );
         escaped = true;
         index++;
         continue;
       }
 
-      if( isTop( COMMENT_BEGIN ) )
+      if( _mode == MODE_COMMENT )
       {
-        if( c == '-' )
+        if( c == '-' && charIs( index+1, '-' ) && charIs( index+2, '%' ) && charIs( index+3, '>' ) )
         {
-          index++;
-          if( charIs( index, '-' ) )
-          {
-            index++;
-            if( charIs( index, '%' ) )
-            {
-              index++;
-              if( charIs( index, '>' ) )
-              {
-                pushStuff();
-                pushToken( COMMENT_END, ++index );
-                continue;
-              }
-            }
-          }
+          return delimiter( index, COMMENT_END, 4 );
         }
       }
-      else
+      else if( c == '$' && !isInCode() && !escaped )
       {
-        if( c == '$' && !isInCode() && !escaped )
+        if( charIs( index+1, '{' ) )
         {
-          index++;
-          if( charIs( index, '{' ) )
-          {
-            pushStuff();
-            pushToken( EXPR_BRACE_BEGIN, ++index );
-            continue;
-          }
+          return delimiter( index, EXPR_BRACE_BEGIN, 2 );
         }
-        else if( c == '<' && !isInCode() && !escaped )
+      }
+      else if( c == '<' && !isInCode() && !escaped )
+      {
+        if( charIs( index+1, '%' ) )
         {
-          index++;
-          if( charIs( index, '%' ) )
+          if( charIs( index+2, '=' ) )
           {
-            pushStuff();
-            index++;
-            if( charIs( index, '=' ) )
-            {
-              pushToken( EXPR_ANGLE_BEGIN, ++index );
-              continue;
-            }
-            else if( charIs( index, '@' ) )
-            {
-              pushToken( DIR_ANGLE_BEGIN, ++index );
-              continue;
-            }
-            else if( charIs( index, '-' ) )
-            {
-              if( charIs( index + 1, '-' ) )
-              {
-                pushToken( COMMENT_BEGIN, index += 2 );
-                continue;
-              }
-            }
-
-            pushToken( STMT_ANGLE_BEGIN, index );
-            continue;
+            return delimiter( index, EXPR_ANGLE_BEGIN, 3 );
           }
-        }
-        else if( c == '}' && isTop( EXPR_BRACE_BEGIN ) && isInCode() && !isParsingString() && !isParsingCharLiteral() )
-        {
-          pushStuff();
-          pushToken( EXPR_BRACE_END, ++index );
-          continue;
-        }
-        else if( c == '%' && isInCode() && !isParsingString() )
-        {
-          index++;
-          if( charIs( index, '>' ) )
+          else if( charIs( index+2, '@' ) )
           {
-            pushStuff();
-            pushToken( ANGLE_END, ++index );
-            continue;
+            return delimiter( index, DIR_ANGLE_BEGIN, 3 );
           }
+          else if( charIs( index+2, '-' ) && charIs( index+3, '-' ) )
+          {
+            return delimiter( index, COMMENT_BEGIN, 4 );
+          }
+          return delimiter( index, STMT_ANGLE_BEGIN, 2 );
         }
       }
-      _stuff.append( c );
-      index = before + 1;
-      setParsingString( c, before );
-      setParsingCharLiteral( c, before );
+      else if( c == '}' && _mode == MODE_EXPR_BRACE && !isParsingString() && !isParsingCharLiteral() )
+      {
+        return delimiter( index, EXPR_BRACE_END, 1 );
+      }
+      else if( c == '%' && isInCode() && !isParsingString() )
+      {
+        if( charIs( index+1, '>' ) )
+        {
+          return delimiter( index, ANGLE_END, 2 );
+        }
+      }
+
+      setParsingString( c, index );
+      setParsingCharLiteral( c, index );
       escaped = false;
+      index++;
+    }
+    return index;
+  }
+
+  private int delimiter( int index, ManTemplateTokenType tokenType, int length )
+  {
+    _nextDelimiter = tokenType;
+    _nextDelimiterEnd = index + length;
+    return index;
+  }
+
+  /**
+   * Used to reparse a content, code, or comment leaf in place, see {@link ManTemplateTokenType#reparseLeaf}.
+   *
+   * @param prevType The type of the token preceding the leaf, null if the leaf is first
+   * @return True if {@code newText}, like {@code oldText}, lexes as a single {@code type} token and leaves the lexer in
+   * the same state, so the tokens following it are unaffected
+   */
+  static boolean isSameSingleToken( ManTemplateTokenType type, @Nullable IElementType prevType,
+                                    CharSequence oldText, CharSequence newText )
+  {
+    int mode = prevType instanceof ManTemplateTokenType ? getModeAfter( (ManTemplateTokenType)prevType ) : MODE_CONTENT;
+    if( getStuffType( mode ) != type )
+    {
+      return false;
+    }
+    int endState = lexSingleToken( type, mode, oldText );
+    return endState >= 0 && endState == lexSingleToken( type, mode, newText );
+  }
+
+  /**
+   * @return The lexer state following {@code text} if it lexes as a single {@code type} token, otherwise -1
+   */
+  private static int lexSingleToken( ManTemplateTokenType type, int mode, CharSequence text )
+  {
+    if( text.length() == 0 || mode == MODE_CONTENT && text.charAt( text.length() - 1 ) == '\\' )
+    {
+      // a trailing backslash escapes the delimiter following the content
+      return -1;
     }
-    
-    pushStuff();
+
+    ManTemplateLexer lexer = new ManTemplateLexer();
+    lexer.start( text, 0, text.length(), mode );
+    if( lexer.getTokenType() != type || lexer.getTokenEnd() != text.length() )
+    {
+      return -1;
+    }
+    lexer.advance();
+    return lexer.getState();
+  }
+
+  private ManTemplateTokenType getStuffType()
+  {
+    return getStuffType( _mode );
+  }
+  private static ManTemplateTokenType getStuffType( int mode )
+  {
+    switch( mode )
+    {
+      case MODE_EXPR_BRACE:
+      case MODE_EXPR_ANGLE:
+        return EXPR;
+      case MODE_STMT:
+        return STMT;
+      case MODE_DIRECTIVE:
+        return DIRECTIVE;
+      case MODE_COMMENT:
+        return COMMENT;
+      default:
+        return CONTENT;
+    }
+  }
+
+  private static int getModeAfter( ManTemplateTokenType delimiter )
+  {
+    if( delimiter == EXPR_BRACE_BEGIN )
+    {
+      return MODE_EXPR_BRACE;
+    }
+    if( delimiter == EXPR_ANGLE_BEGIN )
+    {
+      return MODE_EXPR_ANGLE;
+    }
+    if( delimiter == STMT_ANGLE_BEGIN )
+    {
+      return MODE_STMT;
+    }
+    if( delimiter == DIR_ANGLE_BEGIN )
+    {
+      return MODE_DIRECTIVE;
+    }
+    if( delimiter == COMMENT_BEGIN )
+    {
+      return MODE_COMMENT;
+    }
+    // EXPR_BRACE_END, ANGLE_END, COMMENT_END
+    return MODE_CONTENT;
   }
 
   private void setParsingString( char c, int index )
@@ -277,75 +362,11 @@ public class ManTemplateLexer extends LexerBase
 
   private boolean charIs( int index, char c )
   {
-    return _text.length() > index && _text.charAt( index ) == c;
-  }
-
-  private void pushStuff()
-  {
-    if( _stuff == null || _stuff.length() == 0 )
-    {
-      return;
-    }
-
-    ManTemplateTokenType beginType = _tokens.size() == 0 ? null : _tokens.peek()._type;
-    ManTemplateTokenType stuffType;
-    if( beginType == EXPR_BRACE_BEGIN ||
-        beginType == EXPR_ANGLE_BEGIN )
-    {
-      stuffType = EXPR;
-    }
-    else if( beginType == STMT_ANGLE_BEGIN )
-    {
-      stuffType = STMT;
-    }
-    else if( beginType == DIR_ANGLE_BEGIN )
-    {
-      stuffType = DIRECTIVE;
-    }
-    else if( beginType == COMMENT_BEGIN )
-    {
-      stuffType = COMMENT;
-    }
-    else
-    {
-      stuffType = CONTENT;
-    }
-    _tokens.push( new Token( stuffType, _index, _stuff.toString() ) );
-    _index += _stuff.length();
-    _stuff = new StringBuilder();
-  }
-
-  private void pushToken( ManTemplateTokenType tokenType, int index )
-  {
-    _tokens.push( new Token( tokenType, _index, tokenType.getToken() ) );
-    _index = index;
+    return index >= 0 && index < myEndOffset && myBuffer.charAt( index ) == c;
   }
 
   private boolean isInCode()
   {
-    return isTop( EXPR_ANGLE_BEGIN ) ||
-           isTop( EXPR_BRACE_BEGIN ) ||
-           isTop( STMT_ANGLE_BEGIN ) ||
-           isTop( DIR_ANGLE_BEGIN ) ||
-           isTop( COMMENT_BEGIN );
-  }
-
-  private boolean isTop( ManTemplateTokenType tokenType )
-  {
-    return !_tokens.isEmpty() && _tokens.peek()._type == tokenType;
-  }
-
-  private class Token
-  {
-    ManTemplateTokenType _type;
-    int _offset;
-    String _value;
-
-    Token( ManTemplateTokenType type, int offset, String value )
-    {
-      _type = type;
-      _offset = offset;
-      _value = value;
-    }
+    return _mode != MODE_CONTENT;
   }
 }
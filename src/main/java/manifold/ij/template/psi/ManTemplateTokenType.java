@@ -20,15 +20,18 @@
 package manifold.ij.template.psi;
 
 import com.intellij.lang.ASTNode;
+import com.intellij.psi.impl.source.tree.TreeUtil;
 import com.intellij.psi.tree.IElementType;
 import com.intellij.psi.tree.ILeafElementType;
+import com.intellij.psi.tree.IReparseableLeafElementType;
 import java.util.HashMap;
 import java.util.Map;
 import manifold.ij.template.ManTemplateLanguage;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-public class ManTemplateTokenType extends IElementType implements ILeafElementType
+public class ManTemplateTokenType extends IElementType implements ILeafElementType, IReparseableLeafElementType<ASTNode>
 {
   private static final Map<String, ManTemplateTokenType> DELIMETER_TOKENS = new HashMap<>();
 
@@ -78,4 +81,23 @@ public class ManTemplateTokenType extends IElementType implements ILeafElementTy
   {
     return new ManTemplateTokenImpl( this, leafText );
   }
+
+  /**
+   * Typing inside content, code, or a comment replaces just the leaf, as long as the new text still lexes as a single
+   * token of this type, otherwise the template tree is reparsed
+   */
+  @Nullable
+  @Override
+  public ASTNode reparseLeaf( @NotNull ASTNode leaf, @NotNull CharSequence newLeafText )
+  {
+    if( _delimToken != null )
+    {
+      return null;
+    }
+
+    ASTNode prev = TreeUtil.prevLeaf( leaf );
+    return ManTemplateLexer.isSameSingleToken( this, prev == null ? null : prev.getElementType(), leaf.getChars(), newLeafText )
+      ? createLeafNode( newLeafText )
+      : null;
+  }
 }
\ No newline at end of file
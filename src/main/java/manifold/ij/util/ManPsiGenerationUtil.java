@@ -33,6 +33,7 @@ import manifold.ij.psi.ManExtensionMethodBuilder;
 import manifold.ij.psi.ManLightClassBuilder;
 import manifold.ij.psi.ManLightMethodBuilder;
 import manifold.ij.psi.ManPsiElementFactory;
+import manifold.rt.api.SourcePosition;
 
 import java.util.*;
 
@@ -130,6 +131,110 @@ public class ManPsiGenerationUtil
     return null;
   }
 
+  /**
+   * Plants an extension method in {@code psiClass} directly from the extension class's static {@code extMethod},
+   * substituting the extended class's type parameters for the method's leading type parameters, which avoids rendering
+   * and reparsing the method.
+   *
+   * @param extendedTypeParams The type parameters of {@code psiClass}, empty if it must not be treated as generic
+   * @param isInstance True if the method is an instance extension method, its first parameter is {@code @This}
+   * @param skipFirstParam True if the first parameter is {@code @This} or {@code @ThisClass}
+   * @return The planted method, or null if {@code extMethod} can't be planted structurally, in which case the caller
+   * should fall back to {@link #makePsiMethod(AbstractSrcMethod, PsiElement)}
+   */
+  public static ManExtensionMethodBuilder plantExtensionMethodInPsiClass( ManModule manModule, PsiMethod extMethod, PsiClass psiClass,
+                                                                          PsiTypeParameter[] extendedTypeParams,
+                                                                          boolean isInstance, boolean skipFirstParam )
+  {
+    PsiParameter[] parameters = extMethod.getParameterList().getParameters();
+    if( skipFirstParam && parameters.length == 0 )
+    {
+      return null;
+    }
+
+    // an instance extension method declares the extended type's type vars before its own
+    PsiTypeParameter[] typeParams = extMethod.getTypeParameters();
+    int substitutedCount = isInstance ? Math.min( extendedTypeParams.length, typeParams.length ) : 0;
+    PsiSubstitutor substitutor = PsiSubstitutor.EMPTY;
+    Set<PsiTypeParameter> substituted = new HashSet<>();
+    for( int i = 0; i < substitutedCount; i++ )
+    {
+      substitutor = substitutor.put( typeParams[i], PsiTypesUtil.getClassType( extendedTypeParams[i] ) );
+      substituted.add( typeParams[i] );
+    }
+    for( int i = substitutedCount; i < typeParams.length; i++ )
+    {
+      for( PsiClassType bound : typeParams[i].getExtendsListTypes() )
+      {
+        if( PsiTypesUtil.mentionsTypeParameters( bound, substituted ) )
+        {
+          // the bound would need a new type parameter, leave that to the parser
+          return null;
+        }
+      }
+    }
+    for( PsiParameter param : parameters )
+    {
+      if( param.getTypeElement() == null )
+      {
+        // see StubBuilder#getSrcType()
+        return null;
+      }
+    }
+
+    ManExtensionMethodBuilder method = ManPsiElementFactory.instance()
+      .createExtensionMethodMethod( manModule, psiClass.getManager(), extMethod.getName(), extMethod )
+      .withMethodReturnType( substitutor.substitute( extMethod.getReturnType() ) )
+      .withContainingClass( psiClass );
+
+    for( PsiAnnotation anno : extMethod.getModifierList().getAnnotations() )
+    {
+      String qualifiedName = anno.getQualifiedName();
+      if( SourcePosition.class.getName().equals( qualifiedName ) ||
+        SafeVarargs.class.getTypeName().equals( qualifiedName ) )
+      {
+        PsiAnnotation psiAnnotation = method.getModifierList().addAnnotation( qualifiedName );
+        for( PsiNameValuePair pair : anno.getParameterList().getAttributes() )
+        {
+          psiAnnotation.setDeclaredAttributeValue( pair.getName(), pair.getValue() );
+        }
+      }
+    }
+
+    addModifier( extMethod, method, PsiModifier.PUBLIC );
+    addModifier( extMethod, method, PsiModifier.PACKAGE_LOCAL );
+    addModifier( extMethod, method, PsiModifier.PROTECTED );
+    if( !isInstance )
+    {
+      method.withModifier( PsiModifier.STATIC );
+    }
+    else if( psiClass.isInterface() )
+    {
+      // same as the rendered method, see ManAugmentProvider#createExtensionMethod(), an instance extension method must
+      // be a default method in an interface to not require implementation
+      method.withModifier( PsiModifier.DEFAULT );
+    }
+
+    for( int i = substitutedCount; i < typeParams.length; i++ )
+    {
+      method.withTypeParameterDirect( typeParams[i] );
+    }
+
+    for( int i = skipFirstParam ? 1 : 0; i < parameters.length; i++ )
+    {
+      method.withParameter( parameters[i].getName(), substitutor.substitute( parameters[i].getType() ) );
+    }
+
+    for( PsiClassType throwType : extMethod.getThrowsList().getReferencedTypes() )
+    {
+      if( substitutor.substitute( throwType ) instanceof PsiClassType substitutedType )
+      {
+        method.withException( substitutedType );
+      }
+    }
+    return method;
+  }
+
   private static PsiType mapToLightTypeParms( Project project, PsiTypeParameter[] modelTypeParameters, PsiTypeParameter[] lightTypeParams, PsiType type )
   {
     List<PsiTypeParameter> fromTypeParams = new ArrayList<>();
@@ -188,6 +293,7 @@ public class ManPsiGenerationUtil
     addModifier( refMethod, method, PsiModifier.STATIC );
     addModifier( refMethod, method, PsiModifier.PACKAGE_LOCAL );
     addModifier( refMethod, method, PsiModifier.PROTECTED );
+    addModifier( refMethod, method, PsiModifier.DEFAULT );
   }
 
   private static void copyModifiers( PsiClass psiClass, ManLightClassBuilder lightClass )
@@ -0,0 +1,200 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.util;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Collects items to refresh after a delay and hands them to a batch handler. Items are scheduled within a group, e.g.,
+ * files within a module. Scheduling restarts the group's delay, and an item already pending in the group is coalesced,
+ * so a burst of edits to a group is handled as a single batch, with each item once, after the burst settles.
+ * <p/>
+ * Batches run on a shared bounded pool. If more than {@link #MAX_PENDING} items are pending, further items are handled
+ * on the caller's thread, which keeps large find/replace or VCS operations from queueing unbounded work behind the pool.
+ */
+public class RefreshScheduler<T>
+{
+  private static final Logger LOG = Logger.getInstance( RefreshScheduler.class );
+
+  private static final int MAX_PENDING = 10_000;
+  private static final ExecutorService EXECUTOR = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+    "Manifold Refresh", Math.max( 1, Runtime.getRuntime().availableProcessors() / 2 ) );
+
+  private final Consumer<List<T>> _handler;
+  private final Map<Object, Batch> _pendingByGroup;
+  private final AtomicInteger _queueDepth;
+  private final AtomicLong _executed;
+  private final AtomicLong _coalesced;
+  private final AtomicLong _ranOnCaller;
+  private final AtomicLong _totalLatencyNanos;
+  private final AtomicLong _maxLatencyNanos;
+
+  /**
+   * @param handler Handles a group's batch of pending items, in the order they were first scheduled
+   */
+  public RefreshScheduler( Consumer<List<T>> handler )
+  {
+    _handler = handler;
+    _pendingByGroup = new LinkedHashMap<>();
+    _queueDepth = new AtomicInteger();
+    _executed = new AtomicLong();
+    _coalesced = new AtomicLong();
+    _ranOnCaller = new AtomicLong();
+    _totalLatencyNanos = new AtomicLong();
+    _maxLatencyNanos = new AtomicLong();
+  }
+
+  /**
+   * Schedule {@code item} to be handled with the rest of {@code group}'s batch {@code millis} after the last item is
+   * scheduled in the group.
+   */
+  public void schedule( Object group, T item, long millis )
+  {
+    long now = System.nanoTime();
+    synchronized( _pendingByGroup )
+    {
+      Batch batch = _pendingByGroup.get( group );
+      boolean pending = batch != null && batch._items.containsKey( item );
+      if( pending || _queueDepth.get() < MAX_PENDING )
+      {
+        if( batch == null )
+        {
+          batch = new Batch( group );
+          _pendingByGroup.put( group, batch );
+        }
+        if( pending )
+        {
+          _coalesced.incrementAndGet();
+        }
+        else
+        {
+          batch._items.put( item, now );
+          _queueDepth.incrementAndGet();
+        }
+        batch.restartDelay( millis );
+        return;
+      }
+    }
+
+    // over capacity, let the caller do the work
+    _ranOnCaller.incrementAndGet();
+    handle( Collections.singletonList( item ), Collections.singletonList( now ) );
+  }
+
+  public Metrics getMetrics()
+  {
+    long executed = _executed.get();
+    return new Metrics( _queueDepth.get(), executed, _coalesced.get(), _ranOnCaller.get(),
+      executed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis( _totalLatencyNanos.get() / executed ),
+      TimeUnit.NANOSECONDS.toMillis( _maxLatencyNanos.get() ) );
+  }
+
+  private void flush( Batch batch )
+  {
+    List<T> items;
+    List<Long> scheduledAt;
+    synchronized( _pendingByGroup )
+    {
+      if( _pendingByGroup.get( batch._group ) != batch )
+      {
+        return;
+      }
+      _pendingByGroup.remove( batch._group );
+      items = new ArrayList<>( batch._items.keySet() );
+      scheduledAt = new ArrayList<>( batch._items.values() );
+      _queueDepth.addAndGet( -items.size() );
+    }
+
+    handle( items, scheduledAt );
+    if( LOG.isDebugEnabled() )
+    {
+      LOG.debug( "Refreshed " + items.size() + " item(s) of " + batch._group + ", " + getMetrics() );
+    }
+  }
+
+  private void handle( List<T> items, List<Long> scheduledAt )
+  {
+    long now = System.nanoTime();
+    for( long time : scheduledAt )
+    {
+      long latency = now - time;
+      _totalLatencyNanos.addAndGet( latency );
+      _maxLatencyNanos.accumulateAndGet( latency, Math::max );
+    }
+    _executed.addAndGet( items.size() );
+    try
+    {
+      _handler.accept( items );
+    }
+    catch( Throwable e )
+    {
+      LOG.error( "Refresh batch threw an exception.", e );
+    }
+  }
+
+  private class Batch
+  {
+    private final Object _group;
+    // item -> nanos when first scheduled
+    private final LinkedHashMap<T, Long> _items;
+    private ScheduledFuture<?> _timer;
+
+    private Batch( Object group )
+    {
+      _group = group;
+      _items = new LinkedHashMap<>();
+    }
+
+    // call while holding _pendingByGroup
+    private void restartDelay( long millis )
+    {
+      if( _timer != null )
+      {
+        _timer.cancel( false );
+      }
+      _timer = AppExecutorUtil.getAppScheduledExecutorService().schedule(
+        () -> EXECUTOR.execute( () -> flush( this ) ), millis, TimeUnit.MILLISECONDS );
+    }
+  }
+
+  /**
+   * @param queueDepth Number of items waiting to be handled
+   * @param executed Number of items handled
+   * @param coalesced Number of times an item was scheduled while already pending
+   * @param ranOnCaller Number of items handled on the scheduling thread because too many items were pending
+   * @param averageLatencyMillis Average time from first scheduling an item to handling it
+   * @param maxLatencyMillis Longest time from first scheduling an item to handling it
+   */
+  public record Metrics( int queueDepth, long executed, long coalesced, long ranOnCaller,
+                         long averageLatencyMillis, long maxLatencyMillis ) {}
+}
@@ -47,6 +47,7 @@ import org.jetbrains.annotations.NotNull;
 public class ReparseUtil
 {
   private static ReparseUtil INSTANCE = null;
+  private static final int REPARSE_BATCH_SIZE = 25;
 
   public static ReparseUtil instance()
   {
@@ -167,6 +168,30 @@ public class ReparseUtil
     }
   }
 
+  /**
+   * Reparse {@code files} in batches, each batch in its own EDT event, so that reparsing many files does not freeze the
+   * UI. Unlike {@link #reparseRecentJavaFiles(Project)}, the files need not be recently opened.
+   */
+  public void reparseFiles( @NotNull Project project, @NotNull Collection<? extends VirtualFile> files )
+  {
+    List<VirtualFile> remaining = files.stream()
+      // module-info.java files cause infinite reset
+      .filter( vf -> !vf.getName().toLowerCase().endsWith( "module-info.java" ) )
+      .collect( Collectors.toList() );
+    for( int i = 0; i < remaining.size(); i += REPARSE_BATCH_SIZE )
+    {
+      List<VirtualFile> batch = remaining.subList( i, Math.min( i + REPARSE_BATCH_SIZE, remaining.size() ) );
+      ApplicationManager.getApplication().invokeLater(
+        () -> {
+          List<VirtualFile> valid = batch.stream().filter( VirtualFile::isValid ).collect( Collectors.toList() );
+          if( !valid.isEmpty() )
+          {
+            FileContentUtil.reparseFiles( project, valid, false );
+          }
+        }, ModalityState.nonModal(), project.getDisposed() );
+    }
+  }
+
   public void reparseFile( @NotNull Project project, @NotNull VirtualFile file )
   {
     if( isReparsing( project ) || isReparsing( file ) )